@@ -0,0 +1,80 @@
+package Assets;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Loads assets concurrently on a pool of worker threads and keeps track of how many of them are done, so a loading
+ * screen can show the progress. Every load is a CompletableFuture, so loads that depend on each other (like
+ * everything that depends on the weather) can be chained.
+ */
+public class AssetLoader {
+
+    private final ExecutorService pool;
+
+    private final AtomicInteger total;
+    private final AtomicInteger completed;
+
+    public AssetLoader() {
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "AssetLoader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.total = new AtomicInteger();
+        this.completed = new AtomicInteger();
+    }
+
+    /**
+     * Start loading an asset.
+     * @param loader Loads the asset. Runs on one of the worker threads.
+     * @return The asset, once it is loaded.
+     */
+    public <T> CompletableFuture<T> load(Supplier<T> loader) {
+        return track(CompletableFuture.supplyAsync(loader, pool));
+    }
+
+    /**
+     * Start loading an asset once another one is available.
+     * @param dependency The asset this one needs.
+     * @param loader Loads the asset from the one it depends on. Runs on one of the worker threads.
+     * @return The asset, once it is loaded.
+     */
+    public <T, U> CompletableFuture<U> load(CompletableFuture<T> dependency, Function<T, U> loader) {
+        return track(dependency.thenApplyAsync(loader, pool));
+    }
+
+    /**
+     * Count a load that has been started elsewhere towards the progress.
+     * @param future The load.
+     * @return The same future.
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        total.incrementAndGet();
+        future.whenComplete((result, error) -> completed.incrementAndGet());
+        return future;
+    }
+
+    /**
+     * @return The fraction of loads that have finished, successfully or not, in [0, 1].
+     */
+    public double getProgress() {
+        int started = total.get();
+        return (started == 0) ? 1.0 : (double) completed.get() / started;
+    }
+
+    /**
+     * @return True if every load started so far has finished.
+     */
+    public boolean isDone() {
+        return completed.get() == total.get();
+    }
+}
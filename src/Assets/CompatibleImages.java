@@ -0,0 +1,130 @@
+package Assets;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Creates images in the pixel format of the display the game is shown on. Java2D can cache such images in video
+ * memory and draw them with a plain blit; images in other formats (like the indexed-colour images GIFs decode to) or
+ * sub-images sharing another image's raster are converted on every draw instead.
+ *
+ * The target display is set by the renderer whenever the window's GraphicsConfiguration changes. Until then, and when
+ * running headless, the default screen's configuration or plain integer RGB formats are used.
+ *
+ * Preparation can be turned off with -Drunranrun.compatibleImages=false, which makes copies plain sub-images of the
+ * source as they were before, for comparing render performance.
+ */
+public class CompatibleImages {
+
+    private static final boolean ENABLED = !"false".equals(System.getProperty("runranrun.compatibleImages"));
+
+    private static volatile GraphicsConfiguration target = defaultConfiguration();
+    /* Bumped whenever the target's pixel format changes, so images created earlier can tell they are out of date */
+    private static volatile int formatChanges = 0;
+
+    private CompatibleImages() {
+    }
+
+    /**
+     * Set the display configuration images are prepared for.
+     * @param configuration The new configuration.
+     * @return True if it differs from the previous one, meaning prepared images should be converted again.
+     */
+    public static synchronized boolean setTarget(GraphicsConfiguration configuration) {
+        if (configuration == null || configuration.equals(target)) {
+            return false;
+        }
+
+        GraphicsConfiguration previous = target;
+        target = configuration;
+        if (previous != null && previous.getColorModel().equals(configuration.getColorModel())) {
+            return false;
+        }
+        formatChanges++;
+        return true;
+    }
+
+    /**
+     * @return The number of times the target's pixel format has changed. Holders of images they created themselves
+     *         compare it with the count at creation time, to know when to create them again.
+     */
+    public static int getFormatChanges() {
+        return formatChanges;
+    }
+
+    /**
+     * Create an empty image.
+     * @param width The image width.
+     * @param height The image height.
+     * @param transparency One of the Transparency constants.
+     * @return An image in the target display's format.
+     */
+    public static BufferedImage create(int width, int height, int transparency) {
+        boolean opaque = transparency == Transparency.OPAQUE;
+        if (!ENABLED) {
+            return new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        }
+
+        GraphicsConfiguration configuration = target;
+        if (configuration == null) {
+            /* Premultiplied alpha saves a multiplication per pixel when blending in software */
+            return new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+
+        return configuration.createCompatibleImage(width, height, transparency);
+    }
+
+    /**
+     * Copy an image, or a region of it, into a new standalone image in the target display's format.
+     * @param source The image to copy from. Its transparency is kept.
+     * @param x The left edge of the region.
+     * @param y The top edge of the region.
+     * @param width The region width.
+     * @param height The region height.
+     * @return The copy.
+     */
+    public static BufferedImage copy(BufferedImage source, int x, int y, int width, int height) {
+        if (!ENABLED) {
+            return source.getSubimage(x, y, width, height);
+        }
+
+        BufferedImage image = create(width, height, source.getColorModel().getTransparency());
+
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(source, 0, 0, width, height, x, y, x + width, y + height, null);
+        g.dispose();
+
+        return image;
+    }
+
+    /**
+     * Copy a whole image, see copy(BufferedImage, int, int, int, int).
+     */
+    public static BufferedImage copy(BufferedImage source) {
+        return copy(source, 0, 0, source.getWidth(), source.getHeight());
+    }
+
+    /**
+     * @return False if preparation has been turned off with -Drunranrun.compatibleImages=false.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @return The approximate memory taken up by an image's pixels, in bytes.
+     */
+    public static long getBytes(BufferedImage image) {
+        int bytesPerPixel = (image.getColorModel().getPixelSize() + 7) / 8;
+        return (long) image.getWidth() * image.getHeight() * bytesPerPixel;
+    }
+
+    private static GraphicsConfiguration defaultConfiguration() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return null;
+        }
+
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    }
+}
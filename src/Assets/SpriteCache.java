@@ -0,0 +1,138 @@
+package Assets;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of decoded and sliced images, keyed by path and frame size. Everything that draws images gets them
+ * from here, so every file is read and decoded only once no matter how many objects use it, and acquiring a sheet that
+ * is already cached never touches the disk.
+ *
+ * Sheets are kept for the lifetime of the game and never evicted. The game only uses the handful of images its states
+ * load up front for the weather, about 2 MiB in total, and every state lives as long as the game does, so nothing
+ * would ever be released anyway. Safe to use from any thread.
+ *
+ * Frames are copied out of the decoded image into standalone images in the display's format, see CompatibleImages.
+ * When the display changes, prepare() converts every cached sheet again.
+ */
+public class SpriteCache {
+
+    /* In the order the sheets were loaded */
+    private static final LinkedHashMap<String, SpriteSheet> sheets = new LinkedHashMap<>();
+    private static long memoryUsage = 0;
+
+    private SpriteCache() {
+    }
+
+    /**
+     * Get an image as a single frame.
+     * @param path The image file.
+     * @return The sheet, holding one frame.
+     * @throws IOException If the image is not cached and cannot be read.
+     */
+    public static SpriteSheet get(String path) throws IOException {
+        return get(path, 0, 0);
+    }
+
+    /**
+     * Get an image sliced into frames.
+     * @param path The image file.
+     * @param frameWidth The frame width, or 0 to use the whole image width.
+     * @param frameHeight The frame height, or 0 to use the whole image height.
+     * @return The sheet.
+     * @throws IOException If the image is not cached and cannot be read.
+     */
+    public static SpriteSheet get(String path, int frameWidth, int frameHeight) throws IOException {
+        String key = path + "@" + frameWidth + "x" + frameHeight;
+
+        synchronized (SpriteCache.class) {
+            SpriteSheet sheet = sheets.get(key);
+            if (sheet != null) {
+                return sheet;
+            }
+        }
+
+        /* Decode outside of the lock, so different images can be loaded in parallel */
+        SpriteSheet loaded = load(path, frameWidth, frameHeight);
+
+        synchronized (SpriteCache.class) {
+            /* Somebody else may have loaded the same sheet in the meantime, in which case theirs is kept */
+            SpriteSheet sheet = sheets.get(key);
+            if (sheet == null) {
+                sheet = loaded;
+                sheets.put(key, sheet);
+                memoryUsage += sheet.getBytes();
+            }
+            return sheet;
+        }
+    }
+
+    /**
+     * Prepare all images for a display configuration. Called by the renderer whenever the window's configuration
+     * changes; if the pixel format changed too, every cached sheet is converted to the new one.
+     * @param configuration The display configuration frames are drawn to.
+     */
+    public static synchronized void prepare(GraphicsConfiguration configuration) {
+        if (!CompatibleImages.setTarget(configuration)) {
+            return;
+        }
+
+        memoryUsage = 0;
+        for (SpriteSheet sheet: sheets.values()) {
+            sheet.prepare();
+            memoryUsage += sheet.getBytes();
+        }
+    }
+
+    /**
+     * @return The approximate memory taken up by all cached sheets, in bytes.
+     */
+    public static synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * @return One line per cached sheet with its size, for diagnostics.
+     */
+    public static synchronized String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d sheets, %d KiB%n", sheets.size(), memoryUsage / 1024));
+        for (Map.Entry<String, SpriteSheet> e: sheets.entrySet()) {
+            sb.append(String.format("  %s: %d KiB%n", e.getKey(), e.getValue().getBytes() / 1024));
+        }
+        return sb.toString();
+    }
+
+    private static SpriteSheet load(String path, int frameWidth, int frameHeight) throws IOException {
+        BufferedImage image = ImageIO.read(new File(path));
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + path);
+        }
+
+        if (frameWidth <= 0) frameWidth = image.getWidth();
+        if (frameHeight <= 0) frameHeight = image.getHeight();
+
+        int rows = image.getHeight() / frameHeight;
+        int cols = image.getWidth() / frameWidth;
+        if (rows == 0 || cols == 0) {
+            throw new IllegalArgumentException(path + " is smaller than a single " + frameWidth + "x" + frameHeight + " frame");
+        }
+
+        /* Copy the frames out as standalone images, sub-images sharing a raster cannot be accelerated */
+        BufferedImage[][] frames = new BufferedImage[rows][cols];
+        long bytes = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                frames[row][col] = CompatibleImages.copy(image, col * frameWidth, row * frameHeight, frameWidth, frameHeight);
+                bytes += CompatibleImages.getBytes(frames[row][col]);
+            }
+        }
+
+        return new SpriteSheet(path, frameWidth, frameHeight, frames, bytes);
+    }
+}
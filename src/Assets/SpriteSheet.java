@@ -0,0 +1,106 @@
+package Assets;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A decoded image, sliced into a grid of equally sized frames. Every frame is a standalone image in the display's
+ * format. Handed out by the SpriteCache, which keeps it for as long as the game runs. The frames must not be modified,
+ * they are shared by everyone holding the sheet.
+ *
+ * When the display changes, the frames are converted to the new format in place. Holders should therefore look frames
+ * up through the sheet, or through the arrays returned by getFrames(), instead of keeping the images themselves.
+ */
+public class SpriteSheet {
+
+    private final String path;
+    private final int frameWidth, frameHeight;
+
+    /* Frames by row and column */
+    private final BufferedImage[][] frames;
+    private long bytes;
+
+    /* Arrays handed out by getFrames(), keyed by row and frame count, so they can be updated on conversion */
+    private final Map<Long, BufferedImage[]> animations;
+
+    SpriteSheet(String path, int frameWidth, int frameHeight, BufferedImage[][] frames, long bytes) {
+        this.path = path;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.frames = frames;
+        this.bytes = bytes;
+        this.animations = new HashMap<>();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    public int getRows() {
+        return frames.length;
+    }
+
+    public int getColumns() {
+        return frames[0].length;
+    }
+
+    public BufferedImage getFrame(int row, int col) {
+        return frames[row][col];
+    }
+
+    /**
+     * Get the first frames of a row, for use as an animation.
+     * @param row The row.
+     * @param count The number of frames, at most getColumns().
+     * @return An array holding the frames, shared by all callers asking for the same frames. Must not be modified.
+     */
+    public synchronized BufferedImage[] getFrames(int row, int count) {
+        if (count > frames[row].length) {
+            throw new IllegalArgumentException("Sprite sheet " + path + " has only " + frames[row].length + " frames per row");
+        }
+
+        long key = ((long) row << 32) | count;
+        BufferedImage[] result = animations.get(key);
+        if (result == null) {
+            result = new BufferedImage[count];
+            System.arraycopy(frames[row], 0, result, 0, count);
+            animations.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return The approximate memory taken up by the decoded pixels, in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Convert every frame to the current CompatibleImages target format, updating the arrays handed out so far.
+     */
+    synchronized void prepare() {
+        long total = 0;
+        for (BufferedImage[] row: frames) {
+            for (int col = 0; col < row.length; col++) {
+                row[col] = CompatibleImages.copy(row[col]);
+                total += CompatibleImages.getBytes(row[col]);
+            }
+        }
+        bytes = total;
+
+        for (Map.Entry<Long, BufferedImage[]> e: animations.entrySet()) {
+            int row = (int) (e.getKey() >>> 32);
+            System.arraycopy(frames[row], 0, e.getValue(), 0, e.getValue().length);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package Audio;
 
 import Main.GamePanel;
+import Profiling.Events.AudioPlayEvent;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -10,9 +11,21 @@ import java.io.File;
 
 public class AudioPlayer {
 
+    /* When false, no audio lines are opened at all. Used when running without a sound device */
+    private static boolean linesEnabled = true;
+
     private Clip clip;
 
+    /* Path of the audio file, for diagnostics */
+    private final String source;
+
     public AudioPlayer(String s) {
+        this.source = s;
+
+        if (!linesEnabled) {
+            return;
+        }
+
         try {
             AudioInputStream inputStream = AudioSystem.getAudioInputStream(new File(s));
 
@@ -37,32 +50,73 @@ public class AudioPlayer {
     }
 
     public void play() {
+        AudioPlayEvent event = AudioPlayEvent.isRecorded() ? new AudioPlayEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
         if ((clip == null || GamePanel.getMuted())) {
+            commitPlayEvent(event, false, true);
             return;
         }
         //stop();
         clip.setFramePosition(0);
         clip.start();
+
+        commitPlayEvent(event, false, false);
     }
 
     public void loopContinuously() {
+        AudioPlayEvent event = AudioPlayEvent.isRecorded() ? new AudioPlayEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
         if ((clip == null) || GamePanel.getMuted()) {
+            commitPlayEvent(event, true, true);
             return;
         }
         stop();
         clip.setFramePosition(0);
         clip.loop(Clip.LOOP_CONTINUOUSLY);
+
+        commitPlayEvent(event, true, false);
+    }
+
+    private void commitPlayEvent(AudioPlayEvent event, boolean looped, boolean skipped) {
+        if (event == null) {
+            return;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = this.source;
+            event.looped = looped;
+            event.skipped = skipped;
+            event.commit();
+        }
     }
 
 
     public void stop() {
-        if (clip.isRunning()) {
+        if ((clip != null) && clip.isRunning()) {
             clip.stop();
         }
     }
 
     public void close() {
+        if (clip == null) {
+            return;
+        }
         stop();
         clip.close();
     }
+
+    /**
+     * Stop all AudioPlayers created from now on from opening audio lines. They can still be used, but won't do
+     * anything. Needs to be called before any game state is constructed.
+     */
+    public static void disableLines() {
+        AudioPlayer.linesEnabled = false;
+    }
 }
@@ -1,5 +1,7 @@
 package Entity;
 
+import GameState.StateStream;
+
 import java.awt.image.BufferedImage;
 
 public class Animation {
@@ -80,6 +82,17 @@ public class Animation {
         }
     }
 
+    /**
+     * Capture or restore the animation's progress. The frames themselves are not part of it, the owner sets them.
+     * @param s The stream, see StateStream.
+     */
+    public void syncState(StateStream s) {
+        currentFrame = s.sync(currentFrame);
+        frameCounter = s.sync(frameCounter);
+        delay = s.sync(delay);
+        playedOnce = s.sync(playedOnce);
+    }
+
     public int getFrameNumber() { return currentFrame; }
     public BufferedImage getFrame() {return frames[currentFrame]; }
     public boolean hasPlayedOnce() { return playedOnce; }
@@ -2,14 +2,16 @@ package Entity;
 
 import Audio.AudioPlayer;
 import GameState.GameStateManager;
+import GameState.StateStream;
 import Main.GamePanel;
 import Networking.WeatherData;
+import Rendering.FrameSnapshot;
 import TileMap.*;
 
-import java.awt.*;
-
 public abstract class Entity {
 
+    private static final EntityState[] ENTITY_STATES = EntityState.values();
+
     protected TileMap tileMap;
     protected GameStateManager gsm;
     protected int tileSize;
@@ -18,6 +20,10 @@ public abstract class Entity {
     protected double x;
     protected double y;
 
+    /* Position during the previous tick, used for render interpolation */
+    protected double xPrevious;
+    protected double yPrevious;
+
     /* Global movement vector */
     protected double dx;
     protected double dy;
@@ -31,8 +37,6 @@ public abstract class Entity {
     protected int collisionHeight;
 
     /* Collision detection */
-    protected int currRow;
-    protected int currCol;
     protected double xDest;
     protected double yDest;
     protected double xTemp;
@@ -41,6 +45,8 @@ public abstract class Entity {
     protected boolean topRight;
     protected boolean bottomLeft;
     protected boolean bottomRight;
+    /* Only entities that collide with the map need one, see checkTileMapCollision() */
+    private TileSweep sweep;
 
     /* Used to mark for removal from level */
     protected boolean dead;
@@ -80,15 +86,23 @@ public abstract class Entity {
         this.weatherData = weatherData;
     }
 
+    /**
+     * Check whether the collision boxes of two entities overlap. Same boxes and test as java.awt.Rectangle, without
+     * allocating any, since this runs for every hazard on every tick.
+     * @param o The other entity.
+     */
     public boolean intersects(Entity o) {
-        Rectangle collision1 = this.getCollisionRect();
-        Rectangle collision2 = o.getCollisionRect();
+        if (collisionWidth <= 0 || collisionHeight <= 0 || o.collisionWidth <= 0 || o.collisionHeight <= 0) {
+            return false;
+        }
 
-        return collision1.intersects(collision2);
-    }
+        int left = (int) x - collisionWidth;
+        int top = (int) y - collisionHeight;
+        int otherLeft = (int) o.x - o.collisionWidth;
+        int otherTop = (int) o.y - o.collisionHeight;
 
-    public Rectangle getCollisionRect() {
-        return new Rectangle((int) x - collisionWidth, (int) y - collisionHeight, collisionWidth, collisionHeight);
+        return left < otherLeft + o.collisionWidth && otherLeft < left + collisionWidth
+                && top < otherTop + o.collisionHeight && otherTop < top + collisionHeight;
     }
 
     public void calculateCorners(double x, double y) {
@@ -98,41 +112,31 @@ public abstract class Entity {
         int topTileYIndex = (int) (y - collisionHeight / 2) / tileSize;
         int bottomTileYIndex = (int) (y + (collisionHeight / 2) - 1) / tileSize;
 
-        /* Get corner tile types */
-        Tile.type topLeftTileType = tileMap.getType(topTileYIndex, leftTileXIndex);
-        Tile.type topRightTileType = tileMap.getType(topTileYIndex, rightTileXIndex);
-        Tile.type bottomLeftTileType = tileMap.getType(bottomTileYIndex, leftTileXIndex);
-        Tile.type bottomRightTileType = tileMap.getType(bottomTileYIndex, rightTileXIndex);
-
-        /* Set corner booleans */
-        this.topLeft = topLeftTileType == Tile.type.BLOCKED;
-        this.topRight = topRightTileType == Tile.type.BLOCKED;
-        this.bottomLeft = bottomLeftTileType == Tile.type.BLOCKED;
-        this.bottomRight = bottomRightTileType == Tile.type.BLOCKED;
+        /* Set corner booleans from the map's solidity masks */
+        this.topLeft = tileMap.isSolid(topTileYIndex, leftTileXIndex);
+        this.topRight = tileMap.isSolid(topTileYIndex, rightTileXIndex);
+        this.bottomLeft = tileMap.isSolid(bottomTileYIndex, leftTileXIndex);
+        this.bottomRight = tileMap.isSolid(bottomTileYIndex, rightTileXIndex);
     }
 
+    /**
+     * Move the entity by its movement vector as far as the map lets it, into xTemp and yTemp. The move is swept
+     * through every tile it crosses, so no speed is high enough to pass through a platform; a blocked direction stops
+     * at the tile edge and has its speed set to 0.
+     */
     public void checkTileMapCollision() {
-        currCol = (int) x / tileSize;
-        currRow = (int) y / tileSize;
-
         xDest = x + dx;
         yDest = y + dy;
 
-        xTemp = x;
-        yTemp = y;
-
-        calculateCorners(x, yDest); /* Check if y direction is blocked */
-        if (dy < 0) /* Going up */ {
-            if (topLeft || topRight) { /* Stop under tile we bumped our head into */
-                dy = 0;
-                yTemp = (currRow * tileSize) + (collisionHeight / 2.0);
-            } else { /* Otherwise continue */
-                yTemp += dy;
-            }
-        } else if (dy > 0) /* Going down */ {
-            if (bottomLeft || bottomRight) { /* Stop moving once landed */
-                dy = 0;
+        if (sweep == null) {
+            sweep = new TileSweep(tileSize);
+        }
+        sweep.sweep(tileMap, x, y, collisionWidth, collisionHeight, dx, dy);
+        xTemp = sweep.getX();
+        yTemp = sweep.getY();
 
+        if (sweep.isBlockedY()) {
+            if (dy > 0) { /* Landed */
                 if (fastFalling) {
                     /* Play landing sound */
                     landingSFX.play();
@@ -141,30 +145,13 @@ public abstract class Entity {
                 falling = false;
                 fastFalling = false;
                 jumping = false;
-
-                /* Bracket order matters, kids! */
-                yTemp = ((currRow + 1) * tileSize) - (collisionHeight / 2.0);
-            }else { /* Otherwise keep falling */
-                yTemp += dy;
             }
+            /* Either landed or bumped our head */
+            dy = 0;
         }
 
-        calculateCorners(xDest, y); /* Check if x direction is blocked */
-        if (dx < 0) /* Going left */ {
-            if (topLeft || bottomLeft) {
-                dx = 0;
-                /* Set position just right of tile we moved into */
-                xTemp = (currCol * tileSize) + (collisionWidth / 2.0);
-            } else { /* Otherwise continue */
-                xTemp += dx;
-            }
-        } else if (dx > 0) /* Going right */ {
-            if (topRight || bottomRight) { /* Stop if the player moves into a tile */
-                dx = 0;
-                xTemp = ((currCol + 1) * tileSize) - (collisionWidth / 2.0);
-            } else { /* Otherwise continue */
-                xTemp += dx;
-            }
+        if (sweep.isBlockedX()) { /* Ran into a wall */
+            dx = 0;
         }
 
         if (!falling && !fastFalling) /* Walked off a cliff */ {
@@ -183,8 +170,8 @@ public abstract class Entity {
     public int getCollisionHeight() { return collisionHeight; }
     public boolean isDead() { return this.dead; }
 
-    public synchronized void setPosition(double x, double y) throws LethalDamageException {
-        if (y > tileMap.getHeight() || this.scrolledPast()) {
+    public void setPosition(double x, double y) throws LethalDamageException {
+        if (this.isOutOfLevel(y)) {
             throw new LethalDamageException("Fell off the map");
         }
 
@@ -193,6 +180,24 @@ public abstract class Entity {
     }
 
 
+    /**
+     * Move the entity horizontally without affecting its interpolation, used when the world origin is rebased.
+     * @param dx The distance to move by.
+     */
+    public void shiftX(double dx) {
+        this.x += dx;
+        this.xPrevious += dx;
+    }
+
+    /**
+     * Remember the current position as the previous tick's position. Called once at the start of every tick, and
+     * after teleporting an entity so it is not interpolated across the jump.
+     */
+    public void storePreviousPosition() {
+        this.xPrevious = this.x;
+        this.yPrevious = this.y;
+    }
+
     /**
      * Is true if the Entity is moving left. In the player Entities case, this function is called
      * inside the Level state key event listener.
@@ -224,9 +229,74 @@ public abstract class Entity {
         return (x + tileMap.getX() + width) < 0;
     }
 
+    /**
+     * Checks whether the entity is dead by leaving the level, the check setPosition() throws a LethalDamageException for.
+     * @param y The vertical position the entity moves to.
+     * @return true if that position is below the map or the entity has been scrolled past, false if not.
+     */
+    protected boolean isOutOfLevel(double y) {
+        return y > tileMap.getHeight() || this.scrolledPast();
+    }
+
     public abstract void update();
 
-    public abstract void draw(Graphics2D g);
+    /**
+     * Capture or restore the state the entity is simulated with, see StateStream. Subclasses with state of their own
+     * add it after calling this.
+     * @param s The stream.
+     */
+    public void syncState(StateStream s) {
+        x = s.sync(x);
+        y = s.sync(y);
+        xPrevious = s.sync(xPrevious);
+        yPrevious = s.sync(yPrevious);
+        dx = s.sync(dx);
+        dy = s.sync(dy);
+        maxSpeed = s.sync(maxSpeed);
+        jumping = s.sync(jumping);
+        falling = s.sync(falling);
+        fastFalling = s.sync(fastFalling);
+        dead = s.sync(dead);
+
+        currentAction = ENTITY_STATES[s.sync(currentAction.ordinal())];
+        if (s.isRestoring()) {
+            restoreAnimationFrames();
+        }
+        animation.syncState(s);
+    }
+
+    /**
+     * Set the animation frames of the restored current action. Nothing to do for entities with a single animation.
+     */
+    protected void restoreAnimationFrames() {
+    }
+
+    /**
+     * Add the entity's current animation frame to the frame snapshot, unless it is off screen. The sprite is placed
+     * by its top left corner, both for the previous and the current tick, so the renderer can interpolate.
+     * @param snapshot The snapshot being captured.
+     */
+    public void capture(FrameSnapshot snapshot) {
+        if (notOnScreen()) {
+            return;
+        }
+
+        snapshot.addSprite(
+                animation.getFrame(),
+                xPrevious - (width / 2),
+                yPrevious - (height / 2),
+                x - (width / 2),
+                y - (height / 2),
+                getRenderAlpha()
+        );
+    }
+
+    /**
+     * The opacity the entity is drawn with.
+     */
+    protected float getRenderAlpha() {
+        return 1.0f;
+    }
 
     abstract public void kill();
 }
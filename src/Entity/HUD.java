@@ -1,11 +1,15 @@
 package Entity;
 
 import GameState.GameStateManager;
+import Rendering.FrameSnapshot;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
 
 public class HUD {
+
+    /* The heal indicator is drawn half transparent. Created once, getInstance() allocates for every alpha but 1 */
+    private static final AlphaComposite HEAL_INDICATOR_COMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f);
     private BufferedImage healthBarFrame;
 
     /* Location on screen */
@@ -38,24 +42,33 @@ public class HUD {
         this.healthBarColor = Color.WHITE;
     }
 
-    public void draw(Graphics2D g) {
+    public void capture(FrameSnapshot snapshot) {
+        snapshot.setHUD(player.getHealth(), player.getMaxHealth(), player.getHealCounter(), player.getHealThreshold());
+    }
+
+    /**
+     * Draw the HUD from the player values captured in the snapshot.
+     * @param g The Graphics2D object to draw into.
+     * @param snapshot The frame being drawn.
+     */
+    public void draw(Graphics2D g, FrameSnapshot snapshot) {
         g.setColor(healthBarColor);
 
         /* Draw each health point indicator */
-        for (int i = 0; i < player.getHealth(); i++) {
+        for (int i = 0; i < snapshot.getHealth(); i++) {
             int barXPosition = x + (i * healthBarWidth) + (i * healthBarDistance);
 
             g.fillRect(barXPosition, y, healthBarWidth, healthBarHeight);
         }
 
         /* Draw heal indicator */
-        if ((player.getHealth() < player.getMaxHealth()) && (player.getHealCounter() != 0)) {
+        if ((snapshot.getHealth() < snapshot.getMaxHealth()) && (snapshot.getHealCounter() != 0)) {
             /* The heal indicator is transparent */
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
-            int healIndicatorXPosition = x + (player.getHealth() * healthBarWidth) + (player.getHealth() * healthBarDistance);
-            int healBarWidth = (int) (((double) player.getHealCounter() / (double) player.getHealThreshold()) * healthBarWidth);
+            g.setComposite(HEAL_INDICATOR_COMPOSITE);
+            int healIndicatorXPosition = x + (snapshot.getHealth() * healthBarWidth) + (snapshot.getHealth() * healthBarDistance);
+            int healBarWidth = (int) (((double) snapshot.getHealCounter() / (double) snapshot.getHealThreshold()) * healthBarWidth);
             g.fillRect(healIndicatorXPosition, y, healBarWidth, healthBarHeight);
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
+            g.setComposite(AlphaComposite.SrcOver);
         }
     }
 }
@@ -11,6 +11,18 @@ public abstract class Hazard extends Entity {
         super(tm, gsm, weatherData);
     }
 
+    /**
+     * Put the hazard into the state it is spawned in, so a pooled one cannot be told apart from a new one. See
+     * HazardPool.
+     * @param spawnX The horizontal spawn position.
+     * @param spawnY The vertical spawn position.
+     * @param speed The speed it moves at.
+     */
+    public abstract void reset(double spawnX, double spawnY, double speed);
+
+    /**
+     * Mark the hazard dead. The play state removes it from the level on the next tick and hands it back to the pool.
+     */
     @Override
     public void kill() {
         this.dead = true;
@@ -0,0 +1,240 @@
+package Entity.Hazards;
+
+import Entity.Entity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform grid over the map's tile columns that buckets hazards by the column their left edge is in, so finding the
+ * hazards near an entity, the ones on screen or the ones next to each other takes time in proportion to the hazards
+ * found rather than to all of them. The map is only a few tiles high, so the grid has a single row of cells, one per
+ * tile column. A query also looks as many columns to the left as the widest hazard covers, for the hazards reaching into
+ * the queried range from there.
+ *
+ * The grid is rebuilt from the hazard list once the hazards have moved. Rebuilding reads every hazard's position, but
+ * only buckets them again, with a counting sort, when one of them has moved into another column or the list has
+ * changed; hazards move a few pixels per tick, so most rebuilds stop after that pass. The grid lives in flat arrays that
+ * only ever grow, so neither rebuilding nor querying allocates. It is a broadphase: a query returns every hazard whose
+ * bounds (its position plus and minus its width, which covers both its collision box and its sprite) share a column
+ * with the queried range, and callers do the exact test on those. Query results are list indices in ascending order, so
+ * they are handled in the same order as by a scan of the whole list. Not thread safe.
+ *
+ * Rebuilding reads every hazard, so a single query costs about as much as scanning the list. The grid pays off when
+ * several queries share a rebuild, or for queries a scan answers slowly. The play state only culls hazards to the
+ * screen with it; contact with the player is a scan. forEachPair() is there for hazards interacting with each other,
+ * which nothing does yet; see CollisionBenchmark for what each query costs.
+ */
+public class HazardGrid {
+
+    /**
+     * Receives the pairs of hazards found by forEachPair().
+     */
+    public interface PairVisitor {
+        /**
+         * @param first The list index of one hazard.
+         * @param second The list index of the other, always greater than first.
+         */
+        void visit(int first, int second);
+    }
+
+    private final int tileSize;
+
+    /* The hazard bucketed at every list index, to tell when the list has changed */
+    private Hazard[] bucketed;
+    /* Column span of every hazard, by list index */
+    private int[] firstColumns;
+    private int[] lastColumns;
+    private int count;
+    /* Most columns any hazard covers beyond its first one */
+    private int maxReach;
+
+    /* Every hazard is bucketed once, by its first column: the hazards starting in column minColumn + c are
+     * cellEntries[cellStarts[c]] up to cellEntries[cellStarts[c + 1]], in list order */
+    private int minColumn;
+    private int columns;
+    private int[] cellStarts;
+    private int[] cellEntries;
+
+    /* Results of the last query */
+    private int[] results;
+    private int resultCount;
+
+    /**
+     * @param tileSize The width of a tile column in pixels.
+     */
+    public HazardGrid(int tileSize) {
+        this.tileSize = tileSize;
+        this.bucketed = new Hazard[64];
+        this.firstColumns = new int[64];
+        this.lastColumns = new int[64];
+        this.cellStarts = new int[65];
+        this.cellEntries = new int[64];
+        this.results = new int[64];
+    }
+
+    /**
+     * Bucket the hazards by their current positions. Has to be called again whenever hazards move, are added or are
+     * removed, before the next query.
+     * @param hazards The hazards. Query results are indices into this list.
+     */
+    public void rebuild(List<? extends Hazard> hazards) {
+        int size = hazards.size();
+        boolean changed = size != count;
+        if (firstColumns.length < size) {
+            int capacity = Math.max(size, firstColumns.length * 2);
+            bucketed = Arrays.copyOf(bucketed, capacity);
+            firstColumns = Arrays.copyOf(firstColumns, capacity);
+            lastColumns = Arrays.copyOf(lastColumns, capacity);
+            cellEntries = new int[capacity];
+            results = new int[capacity];
+        }
+        /* Let go of the hazards past the end of a shorter list */
+        if (size < count) {
+            Arrays.fill(bucketed, size, count, null);
+        }
+        count = size;
+
+        if (count == 0) {
+            columns = 0;
+            return;
+        }
+
+        /* Column spans, and the range of columns the grid has to cover */
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int reach = 0;
+        for (int i = 0; i < count; i++) {
+            Hazard h = hazards.get(i);
+            int first = column(h.getX() - h.getWidth());
+            int last = column(h.getX() + h.getWidth());
+            if (bucketed[i] != h || firstColumns[i] != first) {
+                changed = true;
+                bucketed[i] = h;
+                firstColumns[i] = first;
+            }
+            lastColumns[i] = last;
+            min = Math.min(min, first);
+            max = Math.max(max, first);
+            reach = Math.max(reach, last - first);
+        }
+
+        /* Hazards are bucketed by their first column only, so the cells still hold if none of those changed */
+        maxReach = reach;
+        if (!changed) {
+            return;
+        }
+
+        minColumn = min;
+        columns = max - min + 1;
+        if (cellStarts.length < columns + 1) {
+            cellStarts = new int[Math.max(columns + 1, cellStarts.length * 2)];
+        }
+
+        /* Counting sort: count the hazards per cell, turn the counts into start offsets, then fill the cells */
+        Arrays.fill(cellStarts, 0, columns + 1, 0);
+        for (int i = 0; i < count; i++) {
+            cellStarts[firstColumns[i] - minColumn + 1]++;
+        }
+        for (int c = 0; c < columns; c++) {
+            cellStarts[c + 1] += cellStarts[c];
+        }
+        for (int i = 0; i < count; i++) {
+            cellEntries[cellStarts[firstColumns[i] - minColumn]++] = i;
+        }
+        /* Filling moved every start to the end of its cell, which is where the next cell starts */
+        for (int c = columns - 1; c > 0; c--) {
+            cellStarts[c] = cellStarts[c - 1];
+        }
+        cellStarts[0] = 0;
+    }
+
+    /**
+     * Forget every hazard, e.g. when the hazard list has been cleared.
+     */
+    public void clear() {
+        Arrays.fill(bucketed, 0, count, null);
+        count = 0;
+        columns = 0;
+        resultCount = 0;
+    }
+
+    /**
+     * Find the hazards covering any column between two horizontal map positions.
+     * @param left The left end of the range, in map pixels.
+     * @param right The right end of the range, in map pixels.
+     * @return The number of hazards found, see getResult().
+     */
+    public int query(double left, double right) {
+        resultCount = 0;
+        if (columns == 0) {
+            return 0;
+        }
+
+        int leftColumn = column(left);
+        int rightColumn = column(right);
+        /* Hazards starting up to maxReach columns further left may still reach into the range */
+        int first = Math.max(leftColumn - maxReach - minColumn, 0);
+        int last = Math.min(rightColumn - minColumn, columns - 1);
+        for (int c = first; c <= last; c++) {
+            for (int e = cellStarts[c]; e < cellStarts[c + 1]; e++) {
+                int hazard = cellEntries[e];
+                if (lastColumns[hazard] >= leftColumn) {
+                    results[resultCount++] = hazard;
+                }
+            }
+        }
+
+        /* Cells are visited left to right, bring the results back into list order */
+        Arrays.sort(results, 0, resultCount);
+        return resultCount;
+    }
+    /**
+     * Find the hazards that may touch an entity.
+     * @param entity The entity, e.g. the player.
+     * @return The number of hazards found, see getResult().
+     */
+    public int queryNear(Entity entity) {
+        return query(entity.getX() - entity.getWidth(), entity.getX() + entity.getWidth());
+    }
+
+    /**
+     * Find the hazards that may be on screen.
+     * @param cameraX The horizontal camera position, see TileMap.getX().
+     * @param screenWidth The width of the screen in pixels.
+     * @return The number of hazards found, see getResult().
+     */
+    public int queryScreen(double cameraX, int screenWidth) {
+        return query(-cameraX, -cameraX + screenWidth);
+    }
+
+    /**
+     * @param i The result, from 0 up to the count the last query returned.
+     * @return The list index of the hazard.
+     */
+    public int getResult(int i) {
+        return results[i];
+    }
+
+    /**
+     * Visit every pair of hazards that share a column, once per pair.
+     * @param visitor Receives the pairs, in no particular order.
+     */
+    public void forEachPair(PairVisitor visitor) {
+        for (int c = 0; c < columns; c++) {
+            for (int e = cellStarts[c]; e < cellStarts[c + 1]; e++) {
+                int hazard = cellEntries[e];
+                /* Pair it with every hazard starting later in its cell or in a column it covers further right */
+                int end = cellStarts[Math.min(c + lastColumns[hazard] - firstColumns[hazard], columns - 1) + 1];
+                for (int f = e + 1; f < end; f++) {
+                    int other = cellEntries[f];
+                    visitor.visit(Math.min(hazard, other), Math.max(hazard, other));
+                }
+            }
+        }
+    }
+
+    private int column(double x) {
+        return (int) Math.floor(x / tileSize);
+    }
+}
@@ -0,0 +1,68 @@
+package Entity.Hazards;
+
+import Profiling.PoolStats;
+
+import java.util.function.Supplier;
+
+/**
+ * Keeps dead hazards around to be spawned again, so a steady stream of spawns creates no garbage once the pool has
+ * warmed up. Hazards are acquired, reset to their spawn position and speed by the caller, and released once they have
+ * been removed from the level. The pool keeps at most a fixed number of idle hazards; any released beyond that are
+ * left to the garbage collector. Not thread safe, only used by the game thread.
+ */
+public class HazardPool {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Supplier<? extends Hazard> factory;
+    private final Hazard[] free;
+    private int freeCount;
+
+    private final PoolStats stats;
+
+    /**
+     * @param name The name the pool's counters are shown with, see PoolStats.
+     * @param capacity The most idle hazards kept. 0 turns pooling off, every hazard is created anew.
+     * @param factory Creates a hazard whenever the pool is empty.
+     */
+    public HazardPool(String name, int capacity, Supplier<? extends Hazard> factory) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Pool capacity cannot be negative");
+        }
+
+        this.factory = factory;
+        this.free = new Hazard[capacity];
+        this.freeCount = 0;
+        this.stats = PoolStats.register(name, capacity);
+    }
+
+    /**
+     * Take an idle hazard, or create one if there is none. Its state is whatever it was released with, so it has to be
+     * reset before use.
+     */
+    public Hazard acquire() {
+        if (freeCount == 0) {
+            stats.miss();
+            return factory.get();
+        }
+
+        Hazard hazard = free[--freeCount];
+        free[freeCount] = null;
+        stats.hit(freeCount);
+        return hazard;
+    }
+
+    /**
+     * Hand a hazard back once nothing refers to it anymore.
+     * @param hazard The hazard, which must not be in the level.
+     */
+    public void release(Hazard hazard) {
+        if (freeCount == free.length) {
+            stats.discard();
+            return;
+        }
+
+        free[freeCount++] = hazard;
+        stats.release(freeCount);
+    }
+}
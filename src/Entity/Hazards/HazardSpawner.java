@@ -1,14 +1,22 @@
 package Entity.Hazards;
 
+import Assets.SpriteCache;
 import GameState.GameStateManager;
 import GameState.PlayState;
+import GameState.SplitMix64;
+import GameState.StateStream;
 import Main.GamePanel;
 import Networking.WeatherData;
+import Profiling.Events.HazardSpawnEvent;
 import TileMap.TileMap;
 
-import java.util.Random;
+import java.awt.image.BufferedImage;
 
-public class HazardSpawner implements Runnable {
+/**
+ * Spawns projectiles ahead of the player at random intervals. Runs on the game thread and counts time in ticks, so
+ * with the same random stream it spawns the same hazards at the same ticks on every run.
+ */
+public class HazardSpawner {
 
     private final WeatherData weatherData;
 
@@ -16,11 +24,18 @@ public class HazardSpawner implements Runnable {
     private final GameStateManager gsm;
     private final TileMap tileMap;
 
-    private int baseSpawnSpeed;
+    /* Minimum number of ticks between two spawns, the actual interval is up to four times as long */
+    private final int baseSpawnTicks;
+    private int ticksUntilSpawn;
 
     private boolean active;
 
-    private Random RNG;
+    private SplitMix64 RNG;
+
+    /* Projectile animation frames, loaded once and shared by every projectile */
+    private BufferedImage[] projectileFrames;
+    /* Dead projectiles, reused for the next spawns */
+    private final HazardPool projectilePool;
 
     public HazardSpawner(GameStateManager gsm, TileMap tileMap, PlayState parentState, WeatherData weatherData) {
         this.parentState = parentState;
@@ -28,43 +43,103 @@ public class HazardSpawner implements Runnable {
         this.tileMap = tileMap;
         this.weatherData = weatherData;
 
-        this.RNG = new Random();
-
         active = false;
 
-        baseSpawnSpeed = weatherData.getHumidity() * 75;
+        /* 75 milliseconds per percent of humidity */
+        baseSpawnTicks = Math.max(1, weatherData.getHumidity() * 75 * GamePanel.FPS / 1000);
+
+        try {
+            projectileFrames = SpriteCache.get(Projectile.getSpriteSheet(weatherData), Projectile.SIZE, Projectile.SIZE).getFrames(0, Projectile.FRAMES);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        projectilePool = new HazardPool("projectiles", gsm.getHazardPoolCapacity(),
+                () -> new Projectile(this.tileMap, this.gsm, this.weatherData, 0, 0, 0, projectileFrames));
     }
 
-    public synchronized void activate() {
+    /**
+     * Start spawning hazards for a new run.
+     * @param random The random stream spawn times and parameters are drawn from.
+     */
+    public void activate(SplitMix64 random) {
+        this.RNG = random;
         this.active = true;
+        scheduleNextSpawn();
     }
 
-    public synchronized void deactivate() {
+    public void deactivate() {
         this.active = false;
     }
 
-    public void start() {
-        Thread thread = new Thread(this);
-        thread.start();
+    /**
+     * Count down to the next spawn and spawn a hazard when it is due. Called by the play state once per tick.
+     */
+    public void update() {
+        if (!active || --ticksUntilSpawn > 0) {
+            return;
+        }
+
+        spawn();
+        scheduleNextSpawn();
     }
 
-    @Override
-    public void run() {
-        while (active) {
-            try {
-                Thread.sleep(baseSpawnSpeed + RNG.nextInt(baseSpawnSpeed * 3));
-            } catch (Exception e) {
-                /* In case of an interrupt, print the exception and stop execution */
-                e.printStackTrace();
-                return;
-            }
+    /**
+     * Capture or restore the spawn countdown and random stream, see StateStream. Only valid once activated.
+     * @param s The stream.
+     */
+    public void syncState(StateStream s) {
+        this.active = s.sync(this.active);
+        this.ticksUntilSpawn = s.sync(this.ticksUntilSpawn);
+        this.RNG.setState(s.sync(this.RNG.getState()));
+    }
 
-            double spawnXPosition = this.parentState.getPlayerX() + (double) (GamePanel.WIDTH);
-            double spawnYPosition = (RNG.nextInt(7) * GamePanel.TILESIZE);
+    /**
+     * Get a projectile to restore a snapshot into, its state is overwritten by the restore.
+     */
+    public Hazard createHazard() {
+        return projectilePool.acquire();
+    }
+
+    /**
+     * Hand a hazard that has been removed from the level back for reuse.
+     * @param hazard The hazard, which must have been spawned or created by this spawner.
+     */
+    public void release(Hazard hazard) {
+        projectilePool.release(hazard);
+    }
+
+    private void scheduleNextSpawn() {
+        ticksUntilSpawn = baseSpawnTicks + RNG.nextInt(baseSpawnTicks * 3);
+    }
 
-            double speed = weatherData.getWindSpeed() + randomDoubleInRange(0.5, 1) ;
+    private void spawn() {
+        double spawnXPosition = this.parentState.getPlayerX() + (double) (GamePanel.WIDTH);
+        double spawnYPosition = (RNG.nextInt(7) * GamePanel.TILESIZE);
 
-            parentState.spawnHazard(new Projectile(this.tileMap, this.gsm, this.weatherData, spawnXPosition, spawnYPosition, speed));
+        double speed = weatherData.getWindSpeed() + randomDoubleInRange(0.5, 1) ;
+
+        /* Only create an event if something records it, so spawning from the pool allocates nothing */
+        HazardSpawnEvent event = HazardSpawnEvent.isRecorded() ? new HazardSpawnEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
+        Hazard projectile = projectilePool.acquire();
+        projectile.reset(spawnXPosition, spawnYPosition, speed);
+        parentState.spawnHazard(projectile);
+
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.hazard = Projectile.class.getSimpleName();
+                event.x = spawnXPosition;
+                event.y = spawnYPosition;
+                event.speed = speed;
+                event.tileConfiguration = this.gsm.getTileConfiguration();
+                event.scrollSpeed = this.gsm.getScrollSpeed();
+                event.commit();
+            }
         }
     }
 
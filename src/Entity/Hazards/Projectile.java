@@ -3,74 +3,76 @@ package Entity.Hazards;
 import Entity.Animation;
 import Entity.EntityState;
 import Entity.Hazards.Hazard;
-import Entity.LethalDamageException;
 import GameState.GameStateManager;
 import Networking.WeatherData;
 import TileMap.TileMap;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.util.HashMap;
 
 public class Projectile extends Hazard {
-    public Projectile(TileMap tm, GameStateManager gsm, WeatherData weatherData, double spawnX, double spawnY, double speed) {
+    /* Sprite dimensions and number of animation frames */
+    public static final int SIZE = 30;
+    public static final int FRAMES = 2;
+    private static final int ANIMATION_DELAY = 16;
+
+    /* Animation frames, shared between all projectiles */
+    private final BufferedImage[] frames;
+
+    /**
+     * @param frames The animation frames, see getSpriteSheet(). Shared between all projectiles, so spawning one
+     *               does not load anything.
+     */
+    public Projectile(TileMap tm, GameStateManager gsm, WeatherData weatherData, double spawnX, double spawnY, double speed, BufferedImage[] frames) {
         super(tm, gsm, weatherData);
 
-        width = 30;
-        height = 30;
-        collisionHeight = 30;
-        collisionWidth = 30;
+        width = SIZE;
+        height = SIZE;
+        collisionHeight = SIZE;
+        collisionWidth = SIZE;
 
+        this.frames = frames;
+        this.animation = new Animation(frames, ANIMATION_DELAY);
+
+        reset(spawnX, spawnY, speed);
+    }
+
+    @Override
+    public void reset(double spawnX, double spawnY, double speed) {
         maxSpeed = speed;
+        dx = 0;
+        dy = 0;
+        dead = false;
 
         this.x = spawnX;
         this.y = spawnY;
+        storePreviousPosition();
 
         this.currentAction = EntityState.IDLE;
 
-        /* Load the hazard sprites */
-        BufferedImage[] sprites = new BufferedImage[2];
-        try {
-            /* Open the spritesheet */
-            BufferedImage spriteSheet = ImageIO.read(new File(mapWeatherToSpriteSheet(this.weatherData)));
-
-            /* Fill the sprite array, which only contains one animation in this case */
-            for (int j = 0; j < 2; j++) {
-                sprites[j] = spriteSheet.getSubimage(j * width, 0, width, height);
-            }
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        this.animation = new Animation(sprites,16);
+        animation.setFrames(frames);
+        animation.setDelay(ANIMATION_DELAY);
     }
 
     @Override
     public void update() {
-        try {
-            this.setPosition(this.getX() - this.maxSpeed, this.y);
-        } catch (LethalDamageException e) {
+        /* Every projectile ends up leaving the screen, so that is checked directly instead of going through setPosition()
+         * and its exception */
+        if (this.isOutOfLevel(this.y)) {
             this.kill();
+        } else {
+            this.x -= this.maxSpeed;
         }
         animation.update();
 
     }
 
-    @Override
-    public void draw(Graphics2D g) {
-
-        g.drawImage(
-                animation.getFrame(),
-                (int) (x + tileMap.getX() - (width / 2)),
-                (int) (y + tileMap.getY() - (height / 2)),
-                null
-        );
-    }
-
-    private String mapWeatherToSpriteSheet(WeatherData weatherData) {
+    /**
+     * Get the sprite sheet projectiles use in the given weather. Its first row holds the FRAMES animation frames,
+     * each SIZE pixels wide and high.
+     */
+    public static String getSpriteSheet(WeatherData weatherData) {
         String weather = weatherData.getWeatherString();
 
         switch (weather) {
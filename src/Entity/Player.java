@@ -1,21 +1,30 @@
 package Entity;
 
+import Assets.SpriteCache;
+import Assets.SpriteSheet;
 import Audio.AudioPlayer;
 import GameState.GameStateManager;
+import GameState.StateStream;
 import GameState.StateType;
 import Main.GamePanel;
 import Networking.WeatherData;
 import TileMap.TileMap;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
 public class Player extends Entity {
 
+    /* Movement constants. Public so the map generator can check that the player is able to clear its chunks */
+    public static final int SIZE = 30;
+    public static final double MOVE_SPEED = 0.4;
+    public static final double FALL_SPEED = 0.15;
+    public static final double MAX_FALL_SPEED = 4.0;
+    public static final double JUMP_START = -5.2;
+    public static final double FAST_FALL_SPEED = 8.0;
+
     private int health;
     private final int maxHealth;
 
@@ -59,19 +68,19 @@ public class Player extends Entity {
     public Player(TileMap tm, GameStateManager gsm, WeatherData weatherData) {
         super(tm, gsm, weatherData);
 
-        width = 30;
-        height = 30;
+        width = SIZE;
+        height = SIZE;
 
-        collisionWidth = 30;
-        collisionHeight = 30;
+        collisionWidth = SIZE;
+        collisionHeight = SIZE;
 
         /* Player velocity constants, to be tweaked */
-        moveSpeed = 0.4;
+        moveSpeed = MOVE_SPEED;
         maxSpeed = this.gsm.getScrollSpeed();
         stopSpeed = 0.4;
-        fallSpeed = 0.15;
-        maxFallSpeed = 4.0;
-        jumpStart = -5.2;
+        fallSpeed = FALL_SPEED;
+        maxFallSpeed = MAX_FALL_SPEED;
+        jumpStart = JUMP_START;
         stopJumpSpeed = 0.3;
         facingRight = true;
 
@@ -84,7 +93,7 @@ public class Player extends Entity {
 
         /* Fastfall setup */
         fastFalling = false;
-        fastFallSpeed = 8.0;
+        fastFallSpeed = FAST_FALL_SPEED;
 
         health = maxHealth = 4;
 
@@ -111,19 +120,13 @@ public class Player extends Entity {
         /* Load the player sprites */
         try {
             /* Open the spritesheet */
-            BufferedImage spriteSheet = ImageIO.read(new File(mapWeatherToSpriteSheet(weatherData)));
+            SpriteSheet spriteSheet = SpriteCache.get(mapWeatherToSpriteSheet(weatherData), width, height);
             /* Initialize an animation HashMap */
             sprites = new HashMap<>();
 
             /* Convert each row in the spritesheet into an array of buffered images that is used to initialize an animation */
             for (EntityState state: EntityState.values()) {
-                /* Make a new subarray of sprites for each animation */
-                BufferedImage[] subSheet = new BufferedImage[frameAmount.get(state)];
-                /* Fill the subarray */
-                for (int j = 0; j < frameAmount.get(state); j++) {
-                    subSheet[j] = spriteSheet.getSubimage(j * width, state.getIndex() * height, width, height);
-                }
-                sprites.put(state, subSheet);
+                sprites.put(state, spriteSheet.getFrames(state.getIndex(), frameAmount.get(state)));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -262,14 +265,12 @@ public class Player extends Entity {
         animation.update();
     }
 
+    /**
+     * The player is transparent while i-frames are active.
+     */
     @Override
-    public void draw(Graphics2D g) {
-            g.drawImage(
-                    animation.getFrame(),
-                    (int) (x + tileMap.getX() - (width / 2)),
-                    (int) (y + tileMap.getY() - (height / 2)),
-                    null
-            );
+    protected float getRenderAlpha() {
+        return flinching ? 0.75f : 1.0f;
     }
 
     private void getNextPosition() {
@@ -319,6 +320,54 @@ public class Player extends Entity {
         }
     }
 
+    /**
+     * Put the player back into the state it is created in, so no movement, parry or flinch state carries over from the
+     * previous run. Only done for recorded and replayed runs, see PlayState.startWorkers(). The position is set
+     * separately.
+     */
+    public void reset() {
+        dx = 0;
+        dy = 0;
+        jumping = false;
+        falling = false;
+        fastFalling = false;
+
+        parrying = false;
+        parryActive = false;
+        parryCoolDown = false;
+        parryCounter = 0;
+
+        flinching = false;
+        flinchTimer = 0;
+
+        health = maxHealth;
+        healCounter = 0;
+        dead = false;
+
+        currentAction = EntityState.IDLE;
+        animation.setFrames(sprites.get(EntityState.IDLE));
+        animation.setDelay(-1);
+    }
+
+    @Override
+    public void syncState(StateStream s) {
+        super.syncState(s);
+
+        parrying = s.sync(parrying);
+        parryActive = s.sync(parryActive);
+        parryCoolDown = s.sync(parryCoolDown);
+        parryCounter = s.sync(parryCounter);
+        flinching = s.sync(flinching);
+        flinchTimer = s.sync(flinchTimer);
+        health = s.sync(health);
+        healCounter = s.sync(healCounter);
+    }
+
+    @Override
+    protected void restoreAnimationFrames() {
+        animation.setFrames(sprites.get(currentAction));
+    }
+
     /**
      * Dying reloads the level structure from scratch and empties the hazard list. See the reload() method in
      * the PlayState class for more information.
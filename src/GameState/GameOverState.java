@@ -2,6 +2,7 @@ package GameState;
 
 import Main.GamePanel;
 import Networking.WeatherData;
+import Rendering.FrameSnapshot;
 
 import java.awt.*;
 import java.awt.event.KeyEvent;
@@ -44,16 +45,22 @@ public class GameOverState extends GameState {
     }
 
     @Override
-    public void draw(java.awt.Graphics2D g) {
+    public void capture(FrameSnapshot snapshot) {
+        snapshot.setMenuChoice(choiceIndex);
+        snapshot.setScores(this.gsm.getPreviousScore(), this.gsm.getBestScore());
+    }
+
+    @Override
+    public void draw(java.awt.Graphics2D g, FrameSnapshot snapshot) {
         g.setColor(BGColor);
         g.fillRect(0, 0, GamePanel.WIDTH, GamePanel.HEIGHT);
 
-        drawScore(g);
+        drawScore(g, snapshot);
 
         g.setFont(menuFont);
 
         for(int i = 0; i < options.length; i++) {
-            if (i == choiceIndex) {
+            if (i == snapshot.getMenuChoice()) {
                 g.setColor(selectedColor);
             } else {
                 g.setColor(menuItemColor);
@@ -124,12 +131,12 @@ public class GameOverState extends GameState {
     public void stopBGM() {
     }
 
-    private void drawScore(Graphics2D g) {
+    private void drawScore(Graphics2D g, FrameSnapshot snapshot) {
         g.setColor(menuItemColor);
         g.setFont(scoreFont);
-        String prevScoreDisplay = String.format("Distance: %.1fm", this.gsm.getPreviousScore());
+        String prevScoreDisplay = String.format("Distance: %.1fm", snapshot.getPreviousScore());
         int prevScoreWidth = calculateStringDisplayWidth(prevScoreDisplay, this.menuFont, this.frc);
-        String bestScoreDisplay = String.format("Best: %.1fm", this.gsm.getBestScore());
+        String bestScoreDisplay = String.format("Best: %.1fm", snapshot.getBestScore());
         int bestScoreWidth = calculateStringDisplayWidth(bestScoreDisplay, this.menuFont, this.frc);
 
         g.drawString(prevScoreDisplay, (GamePanel.WIDTH / 2) - (prevScoreWidth / 2), 70);
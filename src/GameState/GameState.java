@@ -2,6 +2,7 @@ package GameState;
 
 import Audio.AudioPlayer;
 import Networking.WeatherData;
+import Rendering.FrameSnapshot;
 
 import java.awt.*;
 import java.awt.font.FontRenderContext;
@@ -37,10 +38,18 @@ public abstract class GameState {
     public abstract void update();
 
     /**
-     * Update the game graphics based on current state.
+     * Copy everything this state needs to draw itself into the snapshot. Executed on the game thread after every tick.
+     * @param snapshot The snapshot to fill.
+     */
+    public abstract void capture(FrameSnapshot snapshot);
+
+    /**
+     * Draw a captured frame of this state. Executed on the render thread, so only the snapshot and data that never
+     * changes after init() may be read here.
      * @param g The Game's Graphics2D object.
+     * @param snapshot The frame to draw.
      */
-    public abstract void draw(java.awt.Graphics2D g);
+    public abstract void draw(java.awt.Graphics2D g, FrameSnapshot snapshot);
 
     /**
      * Is executed once every time the state is left.
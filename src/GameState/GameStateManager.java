@@ -1,17 +1,45 @@
 package GameState;
+import Assets.AssetLoader;
+import Entity.Hazards.HazardPool;
+import Input.InputQueue;
+import Input.Replay;
+import Input.ReplayRecorder;
 import Main.GamePanel;
+import Main.Main;
 import Networking.WeatherData;
+import Profiling.FrameProfiler;
+import Profiling.ProfilerOverlay;
+import Profiling.Section;
+import Profiling.Events.GameTickEvent;
+import Profiling.Events.StateTransitionEvent;
+import Rendering.FrameSnapshot;
 
 import java.awt.*;
-import java.util.HashMap;
-
-public class GameStateManager {
-    private final Graphics2D g;
-
-    private final HashMap<StateType, GameState> gameStates;
+import java.awt.event.KeyEvent;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class GameStateManager implements InputQueue.Consumer {
+
+    /* Read by the render thread while the loaded states are added, hence concurrent */
+    private final Map<StateType, GameState> gameStates;
     private StateType previousState;
     private StateType currentState;
 
+    /* Number of ticks simulated so far */
+    private long tick;
+
+    /* Key events from the AWT event thread, applied at the start of each tick */
+    private final InputQueue inputQueue;
+    /* Timestamp of the most recent key press applied to the game, 0 if there was none yet */
+    private long lastInputTimestamp;
+    /* Used while draining, so latencies are measured against the start of the tick */
+    private long tickStart;
+
     /* Freeze frame handling */
     private boolean freezeFrame;
     private int freezeFrameCounter;
@@ -22,58 +50,119 @@ public class GameStateManager {
     private int transitionCounter;
     private final static int transitionLength = 40;
 
-    /* Weather data container */
-    private final WeatherData weatherData;
+    /* Render interpolation factor between the previous and the current tick, in [0, 1]. Only used on the render thread */
+    private double interpolation;
 
-    /* Scroll-speed */
-    private final double defaultScrollSpeed;
+    /* Debug overlay with frame timings, toggled with PROFILER_KEY */
+    private static final int PROFILER_KEY = KeyEvent.VK_F3;
+    private final ProfilerOverlay profilerOverlay;
+    private boolean profilerVisible;
+
+    /* Asset loading. The states other than LOADING are constructed in the background and added once all are done */
+    private final AssetLoader assetLoader;
+    private final Map<StateType, CompletableFuture<? extends GameState>> loadingStates;
+    /* Set once loading is done, until the first state can take input */
+    private boolean markInteractive;
+
+    /* Weather data container, null until loaded */
+    private final CompletableFuture<WeatherData> weatherFuture;
+    private WeatherData weatherData;
+
+    /* Scroll-speed, derived from the weather once it is loaded */
+    private double defaultScrollSpeed;
     private double scrollSpeed;
 
+    /* Name of the map chunk the player is in, null outside of the play state. Only used for diagnostics */
+    private String tileConfiguration;
+
     /* Score containers */
     private double previousScore;
     private double bestScore;
 
+    /* Seed every run is played with, null to derive one per run from the weather and the run ID */
+    private final Long fixedSeed;
+    private long runId;
+
+    /* Records every run, null if runs are not recorded */
+    private final ReplayRecorder recorder;
+    /* Replay to play back as the next run, null to play normally */
+    private Replay pendingReplay;
+
+    /* Most dead hazards kept for reuse, see HazardPool */
+    private final int hazardPoolCapacity;
+
     public static class GameStateManagerBuilder {
 
         private GameStateManager gsm;
-        private final Graphics2D g;
-
-        private final WeatherData weatherData;
 
-        private double scrollSpeed;
+        private final CompletableFuture<WeatherData> weatherData;
+        private Long seed;
+        private Path recordDirectory;
+        private Replay replay;
+        private int hazardPoolCapacity = HazardPool.DEFAULT_CAPACITY;
 
         private static boolean instantiated = false;
 
-        public GameStateManagerBuilder(Graphics2D g, WeatherData weatherData, double scrollSpeed) {
+        public GameStateManagerBuilder(CompletableFuture<WeatherData> weatherData) {
             if (instantiated) {
                 throw new ExceptionInInitializerError("Only one instance of GameStateManager(Builder) may exist.");
             }
-            if (scrollSpeed < 0.5) {
-                throw new IllegalArgumentException("Scrollspeed too low");
-            }
 
             this.gsm = null;
-            this.g = g;
-
-            this.scrollSpeed = scrollSpeed;
 
             this.weatherData = weatherData;
 
             instantiated = true;
         }
 
+        /**
+         * Play every run with the same seed, making runs reproducible.
+         * @param seed The seed, or null to derive a new one for every run.
+         */
+        public GameStateManagerBuilder withSeed(Long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Record every run into a replay file.
+         * @param directory The directory replays are written to, or null to not record.
+         */
+        public GameStateManagerBuilder recordTo(Path directory) {
+            this.recordDirectory = directory;
+            return this;
+        }
+
+        /**
+         * Play a replay back as the first run, which starts right after loading. Runs played from a replay are not
+         * recorded again.
+         * @param replay The replay, or null to start at the main menu as usual.
+         */
+        public GameStateManagerBuilder withReplay(Replay replay) {
+            this.replay = replay;
+            return this;
+        }
+
+        /**
+         * Set how many dead hazards are kept to be spawned again, see HazardPool.
+         * @param capacity The pool capacity, 0 to create every hazard anew.
+         */
+        public GameStateManagerBuilder withHazardPoolCapacity(int capacity) {
+            this.hazardPoolCapacity = capacity;
+            return this;
+        }
+
         public GameStateManager getGsm() {
             if (this.gsm == null) {
-                this.gsm = new GameStateManager(this, this.g, this.weatherData, this.scrollSpeed);
+                this.gsm = new GameStateManager(this, this.weatherData);
             }
 
             return this.gsm;
         }
     }
 
-    private GameStateManager(GameStateManagerBuilder gsmB, Graphics2D g, WeatherData weatherData, double scrollSpeed) {
-        this.g = g;
-        gameStates = new HashMap <StateType, GameState>();
+    private GameStateManager(GameStateManagerBuilder gsmB, CompletableFuture<WeatherData> weatherData) {
+        gameStates = new ConcurrentHashMap<StateType, GameState>();
 
         transitioning = false;
         transitionCounter = 0;
@@ -81,34 +170,158 @@ public class GameStateManager {
         freezeFrame = false;
         freezeFrameCounter = 0;
 
-        this.weatherData = weatherData;
+        inputQueue = new InputQueue();
+        lastInputTimestamp = 0;
 
-        this.defaultScrollSpeed = this.scrollSpeed = scrollSpeed;
-
-        currentState = StateType.MAINMENU;
-        /* Currently, all levels are loaded into memory as soon as the game state manager is constructed. */
-        gameStates.put(StateType.MAINMENU, new MenuState(this, this.weatherData));
-        gameStates.put(StateType.PLAY, new PlayState(this, this.weatherData));
-        gameStates.put(StateType.GAMEOVER, new GameOverState(this, this.weatherData));
-        gameStates.put(StateType.OPTIONS, new OptionsState(this, this.weatherData));
+        profilerOverlay = new ProfilerOverlay();
+        profilerVisible = false;
 
         /* Initialize score containers */
         previousScore = 0;
         bestScore = 0;
+
+        fixedSeed = gsmB.seed;
+        runId = System.currentTimeMillis();
+
+        pendingReplay = gsmB.replay;
+        hazardPoolCapacity = gsmB.hazardPoolCapacity;
+        recorder = (gsmB.recordDirectory != null && gsmB.replay == null) ? new ReplayRecorder(gsmB.recordDirectory) : null;
+
+        /* Show the loading screen while all other states load their assets concurrently, once the weather is in */
+        assetLoader = new AssetLoader();
+        weatherFuture = assetLoader.track(weatherData);
+
+        currentState = StateType.LOADING;
+        gameStates.put(StateType.LOADING, new LoadingState(this, assetLoader));
+
+        loadingStates = new EnumMap<>(StateType.class);
+        loadingStates.put(StateType.MAINMENU, assetLoader.load(weatherFuture, w -> new MenuState(this, w)));
+        loadingStates.put(StateType.PLAY, assetLoader.load(weatherFuture, w -> new PlayState(this, w)));
+        loadingStates.put(StateType.GAMEOVER, assetLoader.load(weatherFuture, w -> new GameOverState(this, w)));
+        loadingStates.put(StateType.OPTIONS, assetLoader.load(weatherFuture, w -> new OptionsState(this, w)));
+    }
+
+    /**
+     * Add the states that have finished loading and switch to the main menu. Called on the game thread by the loading
+     * state once the asset loader is done.
+     */
+    void finishLoading() {
+        if (loadingStates.isEmpty()) {
+            return;
+        }
+
+        try {
+            this.weatherData = weatherFuture.join();
+            for (Map.Entry<StateType, CompletableFuture<? extends GameState>> entry: loadingStates.entrySet()) {
+                gameStates.put(entry.getKey(), entry.getValue().join());
+            }
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Loading the game failed", e.getCause());
+        }
+        loadingStates.clear();
+
+        double scrollSpeed = GamePanel.calculateScrollSpeed(this.weatherData);
+        if (scrollSpeed < 0.5) {
+            throw new IllegalArgumentException("Scrollspeed too low");
+        }
+        this.defaultScrollSpeed = this.scrollSpeed = scrollSpeed;
+
+        setState((pendingReplay != null) ? StateType.PLAY : StateType.MAINMENU);
+        markInteractive = true;
+    }
+
+    /**
+     * Block until every state has loaded, then switch to the main menu. For callers that do not run the loading
+     * state's update loop, like the headless runner.
+     */
+    public void awaitLoading() {
+        CompletableFuture.allOf(loadingStates.values().toArray(new CompletableFuture<?>[0])).exceptionally(e -> null).join();
+        finishLoading();
     }
 
     public void setState(StateType state) {
+        StateTransitionEvent event = StateTransitionEvent.isRecorded() ? new StateTransitionEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
         this.gameStates.get(this.currentState).reload();
         this.previousState = currentState;
         this.currentState = state;
         transitionState();
         this.gameStates.get(this.currentState).startWorkers();
+
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.from = this.previousState.name();
+                event.to = this.currentState.name();
+                event.tileConfiguration = this.tileConfiguration;
+                event.scrollSpeed = this.scrollSpeed;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Get the seed for a new run. Called by the play state whenever a run starts.
+     * @param weatherData The weather the run is played in.
+     * @return The seed of the replay to be played next, the fixed seed if one was given, or otherwise a new seed
+     *         derived from the weather and the run ID.
+     */
+    public RunSeed nextRunSeed(WeatherData weatherData) {
+        if (pendingReplay != null) {
+            return RunSeed.fixed(pendingReplay.getSeed());
+        }
+        if (fixedSeed != null) {
+            return RunSeed.fixed(fixedSeed);
+        }
+        return RunSeed.fromWeather(weatherData, runId++);
+    }
+
+    /**
+     * Take the replay to be played back as the next run.
+     * @return The replay, or null if the next run is played normally.
+     */
+    public Replay takeReplay() {
+        Replay replay = this.pendingReplay;
+        this.pendingReplay = null;
+        return replay;
+    }
+
+    /**
+     * Play a replay back as the next run.
+     */
+    public void setReplay(Replay replay) {
+        this.pendingReplay = replay;
+    }
+
+    /**
+     * @return The recorder runs are recorded with, null if they are not recorded.
+     */
+    public ReplayRecorder getRecorder() {
+        return this.recorder;
+    }
+
+    /**
+     * @return The most dead hazards kept to be spawned again, see HazardPool.
+     */
+    public int getHazardPoolCapacity() {
+        return this.hazardPoolCapacity;
     }
 
     public GameState getState(StateType state) {
         return this.gameStates.get(state);
     }
 
+    public StateType getCurrentState() {
+        return this.currentState;
+    }
+
+    public boolean isTransitioning() {
+        return this.transitioning;
+    }
+
     public void reloadCurrentState() {
         this.gameStates.get(this.currentState).reload();
         transitionState();
@@ -119,12 +332,32 @@ public class GameStateManager {
      * Update the current game state if not currently in a transition. Also handles exiting the transition state.
      */
     public void update() {
+        GameTickEvent event = GameTickEvent.isRecorded() ? new GameTickEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        FrameProfiler.begin(Section.TICK);
+        tick++;
+
+        /* Apply input before anything else, so it affects this tick */
+        tickStart = System.nanoTime();
+        inputQueue.drain(this);
+
         if (updateNeeded()) {
             gameStates.get(currentState).update();
         } else {
+            if (transitioning) {
+                transitionCounter++;
+            }
+
             if (transitionCounter > transitionLength) {
                 transitioning = false;
                 transitionCounter = 0;
+
+                if (markInteractive) {
+                    markInteractive = false;
+                    Main.markInteractive();
+                }
             }
 
             if (freezeFrame) {
@@ -136,33 +369,103 @@ public class GameStateManager {
                 freezeFrameCounter = 0;
             }
         }
+        FrameProfiler.end(Section.TICK);
+
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.tick = this.tick;
+                event.state = this.currentState.name();
+                event.transitioning = this.transitioning;
+                event.tileConfiguration = this.tileConfiguration;
+                event.scrollSpeed = this.scrollSpeed;
+                event.commit();
+            }
+        }
     }
 
     /**
-     * Draw the current game state. Also handles transition graphics, as well as incrementing the transition state.
+     * Capture everything needed to draw the current frame into a snapshot. Called on the game thread after every tick.
+     * @param snapshot The snapshot to fill. Its previous contents are discarded.
+     */
+    public void capture(FrameSnapshot snapshot) {
+        snapshot.begin(tick, currentState, transitioning, transitionCounter, profilerVisible);
+        snapshot.setContext(tileConfiguration, scrollSpeed);
+        snapshot.setInputTimestamp(lastInputTimestamp);
+        gameStates.get(currentState).capture(snapshot);
+        snapshot.end();
+    }
+
+    /**
+     * Draw a captured frame. Also handles transition graphics. The transition state itself is advanced in update(),
+     * so transitions take the same time at any render rate. Called on the render thread, which must not touch any
+     * live game state beyond the snapshot.
      * @param g The game's Graphics2D object.
+     * @param snapshot The frame to draw.
+     * @param interpolation How far the frame lies between the previous and the current tick, in [0, 1].
+     */
+    public void draw(java.awt.Graphics2D g, FrameSnapshot snapshot, double interpolation) {
+        FrameProfiler.begin(Section.DRAW);
+        this.interpolation = interpolation;
+
+        if (snapshot.isTransitioning()) {
+            FrameProfiler.begin(Section.TRANSITION_DRAW);
+            drawTransitionAnimation(g, snapshot, transitionLength);
+            FrameProfiler.end(Section.TRANSITION_DRAW);
+        } else {
+            gameStates.get(snapshot.getState()).draw(g, snapshot);
+        }
+        FrameProfiler.end(Section.DRAW);
+
+        if (snapshot.isProfilerVisible()) {
+            profilerOverlay.draw(g);
+        }
+    }
+
+    /**
+     * Apply a key event taken from the input queue. Called on the game thread while draining.
      */
-    public void draw(java.awt.Graphics2D g) {
-        if (transitioning) {
-            drawTransitionAnimation(transitionCounter, transitionLength);
-            transitionCounter++;
+    @Override
+    public void keyEvent(int key, boolean pressed, long timestamp) {
+        if (pressed) {
+            FrameProfiler.record(Section.INPUT_TO_TICK, tickStart - timestamp);
+            lastInputTimestamp = timestamp;
+            keyPressed(key);
         } else {
-            gameStates.get(currentState).draw(g);
+            keyReleased(key);
         }
+    }
 
+    public ProfilerOverlay getProfilerOverlay() {
+        return profilerOverlay;
+    }
+
+    /**
+     * The queue key events from other threads have to go through. Events in it are applied at the start of the next
+     * tick, on the game thread.
+     */
+    public InputQueue getInputQueue() {
+        return this.inputQueue;
     }
 
     /**
-     * Key events are propagated down from the GamePanel class down to the concrete game state
+     * Key events are propagated down from the GamePanel class down to the concrete game state. Must only be called on
+     * the game thread, other threads go through the input queue.
      */
     public void keyPressed(int k) {
+        if (k == PROFILER_KEY) {
+            profilerVisible = !profilerVisible;
+            return;
+        }
+
         if (!transitioning) {
             gameStates.get(currentState).keyPressed(k);
         }
     }
 
     /**
-     * Key events are propagated down from the GamePanel class down to the concrete game state
+     * Key events are propagated down from the GamePanel class down to the concrete game state. Must only be called on
+     * the game thread, other threads go through the input queue.
      */
     public void keyReleased(int k) {
         gameStates.get(currentState).keyReleased(k);
@@ -182,10 +485,13 @@ public class GameStateManager {
     /**
      * Draw a specific frame of the game state transition animation based on the transition  counter and duration. The
      * current animation is a rolling black screen, implemented here as a cascade of black bars.
-     * @param transitionCounter The current frame of the transition.
+     * @param g The game's Graphics2D object.
+     * @param snapshot The frame to draw, holding the current frame of the transition.
      * @param transitionLength The total length of the transition.
      */
-    private void drawTransitionAnimation(int transitionCounter, int transitionLength) {
+    private void drawTransitionAnimation(Graphics2D g, FrameSnapshot snapshot, int transitionLength) {
+        int transitionCounter = snapshot.getTransitionCounter();
+
         if ((transitionCounter < 0) || (transitionLength <= 0)) {
             throw new IllegalArgumentException("Invalid transition animation parameters");
         }
@@ -200,7 +506,7 @@ public class GameStateManager {
         } else if (transitionCounter < transitionLength) {
             /* Second stage of the transition */
             /* Draw the first frame of the new state under the transition animation */
-            gameStates.get(currentState).draw(g);
+            gameStates.get(snapshot.getState()).draw(g, snapshot);
             g.setColor(Color.BLACK);
             /* Cover the screen with a black rectangle that shrinks left-to-right until the image is fully visible */
             int rectX = GamePanel.WIDTH / (transitionLength / 2) * (transitionCounter - (transitionLength / 2));
@@ -208,10 +514,22 @@ public class GameStateManager {
         }
     }
 
+    /**
+     * The interpolation factor of the frame currently being drawn. Only meaningful on the render thread.
+     * @return The interpolation factor, in [0, 1].
+     */
+    public double getInterpolation() {
+        return this.interpolation;
+    }
+
     private boolean updateNeeded() {
         return !transitioning && !freezeFrame;
     }
 
+    public long getTick() {
+        return this.tick;
+    }
+
     public double getScrollSpeed() {
         return this.scrollSpeed;
     }
@@ -228,6 +546,14 @@ public class GameStateManager {
         this.scrollSpeed = scrollSpeed;
     }
 
+    public String getTileConfiguration() {
+        return this.tileConfiguration;
+    }
+
+    public void setTileConfiguration(String tileConfiguration) {
+        this.tileConfiguration = tileConfiguration;
+    }
+
 
     /**
      * Set the field containing the previous run's score. If the amount is larger than the bestScore variable,
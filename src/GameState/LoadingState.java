@@ -0,0 +1,97 @@
+package GameState;
+
+import Assets.AssetLoader;
+import Main.GamePanel;
+import Rendering.FrameSnapshot;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+
+/**
+ * The state the game starts in. Shows a progress bar while the other states load their assets in the background,
+ * and hands over to the main menu once everything is loaded. Does not depend on the weather, since that is one of the
+ * things being loaded.
+ */
+public class LoadingState extends GameState {
+
+    private static final String TITLE = "Loading";
+
+    /* Progress bar dimensions */
+    private static final int BAR_WIDTH = 200;
+    private static final int BAR_HEIGHT = 8;
+
+    private final AssetLoader loader;
+
+    private Font font;
+    private FontRenderContext frc;
+
+    public LoadingState(GameStateManager gsm, AssetLoader loader) {
+        super(StateType.LOADING, gsm, null);
+        this.loader = loader;
+        init();
+    }
+
+    @Override
+    public void init() {
+        font = new Font("Arial", Font.PLAIN, 12);
+        frc = new FontRenderContext(null, false, false);
+    }
+
+    @Override
+    public void update() {
+        if (loader.isDone()) {
+            gsm.finishLoading();
+        }
+    }
+
+    @Override
+    public void capture(FrameSnapshot snapshot) {
+        snapshot.setLoadingProgress(loader.getProgress());
+    }
+
+    @Override
+    public void draw(Graphics2D g, FrameSnapshot snapshot) {
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, GamePanel.WIDTH, GamePanel.HEIGHT);
+
+        int barX = (GamePanel.WIDTH / 2) - (BAR_WIDTH / 2);
+        int barY = (GamePanel.HEIGHT / 2) - (BAR_HEIGHT / 2);
+
+        g.setColor(Color.WHITE);
+        g.setFont(font);
+        int titleWidth = calculateStringDisplayWidth(TITLE, this.font, this.frc);
+        g.drawString(TITLE, (GamePanel.WIDTH / 2) - (titleWidth / 2), barY - 10);
+
+        /* Outline, then the filled part */
+        g.drawRect(barX, barY, BAR_WIDTH, BAR_HEIGHT);
+        g.fillRect(barX + 2, barY + 2, (int) ((BAR_WIDTH - 3) * snapshot.getLoadingProgress()), BAR_HEIGHT - 3);
+    }
+
+    @Override
+    public void reload() {
+        /* Nothing to reset, the game never returns to the loading state */
+    }
+
+    @Override
+    public void startWorkers() {
+
+    }
+
+    @Override
+    public void playBGM() {
+    }
+
+    @Override
+    public void stopBGM() {
+    }
+
+    @Override
+    public void keyPressed(int k) {
+        /* Input is ignored until the game has loaded */
+    }
+
+    @Override
+    public void keyReleased(int k) {
+
+    }
+}
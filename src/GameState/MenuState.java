@@ -3,6 +3,7 @@ package GameState;
 import Audio.AudioPlayer;
 import Main.GamePanel;
 import Networking.WeatherData;
+import Rendering.FrameSnapshot;
 import TileMap.Background;
 
 import java.awt.*;
@@ -74,8 +75,14 @@ public class MenuState extends GameState{
     }
 
     @Override
-    public void draw(Graphics2D g) {
-        bg.draw(g);
+    public void capture(FrameSnapshot snapshot) {
+        bg.capture(snapshot);
+        snapshot.setMenuChoice(currentChoice);
+    }
+
+    @Override
+    public void draw(Graphics2D g, FrameSnapshot snapshot) {
+        bg.draw(g, snapshot);
 
         /* Draw title */
         g.setColor(titleColor);
@@ -85,7 +92,7 @@ public class MenuState extends GameState{
         /* Draw menu options */
         g.setFont(font);
         for(int i = 0; i < options.length; i++) {
-            if (i == currentChoice) {
+            if (i == snapshot.getMenuChoice()) {
                 g.setColor(selectedColor);
             } else {
                 g.setColor(menuItemColor);
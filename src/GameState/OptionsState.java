@@ -3,6 +3,7 @@ package GameState;
 import Audio.AudioPlayer;
 import Main.GamePanel;
 import Networking.WeatherData;
+import Rendering.FrameSnapshot;
 import TileMap.Background;
 
 import java.awt.*;
@@ -53,12 +54,19 @@ public class OptionsState extends GameState{
     }
 
     @Override
-    public void draw(Graphics2D g) {
-        bg.draw(g);
+    public void capture(FrameSnapshot snapshot) {
+        bg.capture(snapshot);
+        snapshot.setMenuChoice(currentChoice);
+        snapshot.setMuted(GamePanel.getMuted());
+    }
+
+    @Override
+    public void draw(Graphics2D g, FrameSnapshot snapshot) {
+        bg.draw(g, snapshot);
         g.setFont(font);
-        String muteString = options[0] + (GamePanel.getMuted() ? "off" : "on");
+        String muteString = options[0] + (snapshot.isMuted() ? "off" : "on");
         for (int i = 0; i < options.length; i++) {
-            if (i == currentChoice) {
+            if (i == snapshot.getMenuChoice()) {
                 g.setColor(selectedColor);
             } else {
                 g.setColor(menuItemColor);
@@ -3,17 +3,28 @@ package GameState;
 import Audio.AudioPlayer;
 import Entity.*;
 import Entity.Hazards.Hazard;
+import Entity.Hazards.HazardGrid;
 import Entity.Hazards.HazardSpawner;
 import Entity.Hazards.Projectile;
+import Input.Replay;
+import Input.ReplayPlayer;
+import Input.ReplayRecorder;
 import Main.GamePanel;
 import Networking.WeatherData;
+import Profiling.FrameProfiler;
+import Profiling.Section;
+import Rendering.FrameSnapshot;
 import TileMap.*;
 
 import java.awt.*;
 import java.awt.event.KeyEvent;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
 
-public class PlayState extends GameState{
+public class PlayState extends GameState implements StateHistory.Subject {
+
+    /* Number of ticks the R key rewinds the run by */
+    private static final int REWIND_TICKS = 2 * GamePanel.FPS;
+    private static final int REWIND_KEY = KeyEvent.VK_R;
 
     private TileMap tileMap;
     private Background background;
@@ -21,11 +32,29 @@ public class PlayState extends GameState{
     private AudioPlayer BGM;
     private HUD hud;
 
+    /* Last composite a translucent sprite was drawn with, only touched by the render thread */
+    private AlphaComposite spriteComposite;
+
     private HazardSpawner hazardSpawner;
-    private ConcurrentLinkedQueue<Hazard> hazards;
+    /* Only touched by the game thread, and iterated by index so the hot path allocates nothing */
+    private ArrayList<Hazard> hazards;
+    /* Broadphase culling the hazards to the screen, rebuilt whenever a frame is captured */
+    private HazardGrid hazardGrid;
 
     private double accelerationFactor;
 
+    /* Distance the world has been shifted back by floating origin rebases during this run */
+    private double rebasedDistance;
+
+    /* Simulation time of the run, which goes back when the run is rewound */
+    private long runTick;
+    /* Number of updates since the run started including rewound ones, the time base of replays */
+    private long elapsedTicks;
+    /* Snapshots of the last few seconds of the run, see syncState() */
+    private StateHistory history;
+    /* Plays a replay back instead of taking input, null during normal runs */
+    private ReplayPlayer replayPlayer;
+
     public PlayState(GameStateManager gsm, WeatherData weatherData) {
         /* Send the game state type and manager to the parent class so they can be marked as final */
         super(StateType.PLAY, gsm, weatherData);
@@ -38,7 +67,7 @@ public class PlayState extends GameState{
         this.background = new Background(mapWeatherToBackground(this.weatherData));
         this.background.setVector(-0.05, 0);
 
-        this.accelerationFactor = calculateAccelerationFactor(this.weatherData);
+        this.accelerationFactor = GamePanel.calculateAccelerationFactor(this.weatherData);
 
         /* Load level tile map */
         this.tileMap = new TileMap(30, this.weatherData);
@@ -46,6 +75,7 @@ public class PlayState extends GameState{
 
         /* Load level structure */
         this.tileMap.setPosition(0, 0);
+        this.tileMap.setChunkListener(this::recordChunk);
 
         /* Load and place player entity */
         this.player = new Player(this.tileMap, this.gsm, this.weatherData);
@@ -54,13 +84,17 @@ public class PlayState extends GameState{
         } catch (Exception e) {
             e.printStackTrace();
         }
+        this.player.storePreviousPosition();
 
         /* Create hazard list */
-        this.hazards = new ConcurrentLinkedQueue<Hazard>();
+        this.hazards = new ArrayList<>();
+        this.hazardGrid = new HazardGrid(this.tileMap.getTileSize());
 
         /* Create hazard spawner */
         this.hazardSpawner = new HazardSpawner(this.gsm, this.tileMap, this, this.weatherData);
 
+        this.history = new StateHistory();
+
         /* Create HUD */
         this.hud = new HUD(this.gsm, this.player, 10, 10);
 
@@ -70,60 +104,168 @@ public class PlayState extends GameState{
 
     @Override
     public void update() {
+        /* Apply the key presses recorded for this tick, as if they had just come in */
+        if (this.replayPlayer != null) {
+            int key;
+            while ((key = this.replayPlayer.next(this.elapsedTicks)) != ReplayPlayer.NO_KEY) {
+                applyKey(key);
+            }
+        }
+
         /* Handle level acceleration */
-        this.gsm.setScrollSpeed(this.gsm.getDefaultScrollSpeed() + this.calculateAcceleration());
+        this.gsm.setScrollSpeed(this.gsm.getDefaultScrollSpeed() + GamePanel.calculateAcceleration(this.accelerationFactor, getDistance()));
+
+        /* Keep the last tick's positions around so the renderer can interpolate */
+        this.player.storePreviousPosition();
+        this.tileMap.storePreviousPosition();
 
+        FrameProfiler.begin(Section.BACKGROUND_UPDATE);
         this.background.update();
+        FrameProfiler.end(Section.BACKGROUND_UPDATE);
+
+        FrameProfiler.begin(Section.PLAYER_UPDATE);
         this.player.update();
-        this.tileMap.update();
+        FrameProfiler.end(Section.PLAYER_UPDATE);
+
+        /* Falling off the map ends the run, which has already been reset for the next one */
+        if (this.gsm.getCurrentState() != StateType.PLAY) {
+            return;
+        }
+
+        FrameProfiler.begin(Section.TILEMAP_UPDATE);
+        this.tileMap.update(this.gsm.getScrollSpeed());
+        FrameProfiler.end(Section.TILEMAP_UPDATE);
 
         /* Scroll the map by the amount determined by the GamePanel */
         double newMapX = this.tileMap.getX() - this.gsm.getScrollSpeed();
         double newMapY = (double) (GamePanel.WIDTH / 2) - this.player.getY();
         this.tileMap.setPosition(newMapX, newMapY);
 
-        /* Update hazards */
+        /* Keep coordinates small on long runs */
+        if (this.tileMap.needsRebase()) {
+            rebaseOrigin();
+        }
+
+        /* Let the game state manager know where we are, for diagnostics */
+        ChunkView currentChunk = this.tileMap.getChunkAt((int) this.player.getX() / this.tileMap.getTileSize());
+        this.gsm.setTileConfiguration(currentChunk == null ? null : currentChunk.getName());
+
+        /* Spawn and update hazards */
+        FrameProfiler.begin(Section.HAZARDS_UPDATE);
+        this.hazardSpawner.update();
         updateHazards();
+        FrameProfiler.end(Section.HAZARDS_UPDATE);
+
+        this.runTick++;
+        this.elapsedTicks++;
+        this.history.capture(this.runTick, this);
     }
 
+    /**
+     * Capture or restore everything the simulation of a run depends on, see StateHistory. Sprites, sounds and the map
+     * columns are not part of it, they are the same at every tick.
+     * @param s The stream.
+     */
     @Override
-    public void draw(Graphics2D g) {
-        /* Draw background */
-        this.background.draw(g);
+    public void syncState(StateStream s) {
+        this.runTick = s.sync(this.runTick);
+        this.rebasedDistance = s.sync(this.rebasedDistance);
+        this.gsm.setScrollSpeed(s.sync(this.gsm.getScrollSpeed()));
+
+        this.background.syncState(s);
+        this.tileMap.syncState(s);
+        this.player.syncState(s);
+        this.hazardSpawner.syncState(s);
+
+        /* Match the number of hazards before restoring them, their state is overwritten either way */
+        int count = s.sync(this.hazards.size());
+        if (s.isRestoring()) {
+            while (this.hazards.size() > count) {
+                this.hazardSpawner.release(this.hazards.remove(this.hazards.size() - 1));
+            }
+            while (this.hazards.size() < count) {
+                this.hazards.add(this.hazardSpawner.createHazard());
+            }
+        }
+        for (int i = 0; i < this.hazards.size(); i++) {
+            this.hazards.get(i).syncState(s);
+        }
+    }
 
-        /* Draw tilemap */
-        this.tileMap.draw(g);
-
-        /* Draw player */
-        if (this.player.isFlinching()) {
-            /* Make player transparent while i-frames are active */
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.75f));
-            this.player.draw(g);
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
-        } else {
-            this.player.draw(g);
+    @Override
+    public void capture(FrameSnapshot snapshot) {
+        this.background.capture(snapshot);
+        this.tileMap.capture(snapshot);
+
+        /* Player first, hazards are drawn on top of it */
+        this.player.capture(snapshot);
+        this.hazardGrid.rebuild(this.hazards);
+        int visible = this.hazardGrid.queryScreen(this.tileMap.getX(), GamePanel.WIDTH);
+        for (int i = 0; i < visible; i++) {
+            Hazard h = this.hazards.get(this.hazardGrid.getResult(i));
+            if (!h.isDead()) {
+                h.capture(snapshot);
+            }
         }
 
-        drawHazards(g);
+        this.hud.capture(snapshot);
+    }
 
-        this.hud.draw(g);
+    @Override
+    public void draw(Graphics2D g, FrameSnapshot snapshot) {
+        double interpolation = this.gsm.getInterpolation();
+
+        /* Draw background */
+        FrameProfiler.begin(Section.BACKGROUND_DRAW);
+        this.background.draw(g, snapshot);
+        FrameProfiler.end(Section.BACKGROUND_DRAW);
+
+        /* Draw tilemap */
+        FrameProfiler.begin(Section.TILEMAP_DRAW);
+        this.tileMap.draw(g, snapshot, interpolation);
+        FrameProfiler.end(Section.TILEMAP_DRAW);
+
+        /* Draw player and hazards */
+        FrameProfiler.begin(Section.SPRITES_DRAW);
+        drawSprites(g, snapshot, interpolation);
+        FrameProfiler.end(Section.SPRITES_DRAW);
+
+        FrameProfiler.begin(Section.HUD_DRAW);
+        this.hud.draw(g, snapshot);
+        FrameProfiler.end(Section.HUD_DRAW);
     }
 
     @Override
     public void reload() {
         this.stopBGM();
 
+        /* Finish the run's replay */
+        ReplayRecorder recorder = this.gsm.getRecorder();
+        if (this.replayPlayer != null) {
+            Replay replay = this.replayPlayer.getReplay();
+            System.out.printf("Replay ended at tick %d, recorded run ended at tick %d%n", this.elapsedTicks, replay.getEndTick());
+            this.replayPlayer = null;
+        } else if (recorder != null) {
+            recorder.end(this.elapsedTicks);
+        }
+
         /* Clear randomly generated map */
         this.tileMap.reset();
 
-        /* Turn off hazard spawner */
+        /* Turn off hazard spawner and clear the remaining hazards */
         this.hazardSpawner.deactivate();
+        for (int i = 0; i < this.hazards.size(); i++) {
+            this.hazardSpawner.release(this.hazards.get(i));
+        }
+        this.hazards.clear();
+        this.hazardGrid.clear();
 
         /* Revert scroll speed to its minimum value */
         this.gsm.resetScrollSpeed();
 
         /* Update player score */
         this.gsm.setPreviousScore(this.getScore());
+        this.rebasedDistance = 0;
 
         /* Send player back to initial position */
         try {
@@ -131,17 +273,82 @@ public class PlayState extends GameState{
         } catch (Exception e) {
             e.printStackTrace();
         }
+        this.player.storePreviousPosition();
     }
 
     @Override
     public void startWorkers() {
         this.playBGM();
-        this.hazardSpawner.activate();
-        this.hazardSpawner.start();
+
+        /* Every run draws its map and hazards from the run seed, see RunSeed */
+        RunSeed seed = this.gsm.nextRunSeed(this.weatherData);
+        Replay replay = this.gsm.takeReplay();
+
+        /* A replay starts from a fresh player, so a recorded run has to start from one as well, whatever the previous
+         * run left behind. Other runs carry it over */
+        if (replay != null || this.gsm.getRecorder() != null) {
+            this.player.reset();
+        }
+        this.tileMap.startRun(seed.getStream(RunSeed.Stream.MAP), seed.isFixed(), (replay != null) ? getChunkScript(replay) : null);
+        this.hazardSpawner.activate(seed.getStream(RunSeed.Stream.HAZARDS));
+        this.runTick = 0;
+        this.elapsedTicks = 0;
+        this.history.clear();
+        this.history.capture(this.runTick, this);
+
+        if (replay != null) {
+            this.replayPlayer = new ReplayPlayer(replay);
+        } else if (this.gsm.getRecorder() != null) {
+            this.gsm.getRecorder().begin(seed.getSeed(), this.weatherData);
+        }
+    }
+
+    /**
+     * Record a chunk the map was extended with into the run's replay, so the map can be rebuilt exactly.
+     */
+    private void recordChunk(ChunkView chunk) {
+        ReplayRecorder recorder = this.gsm.getRecorder();
+        if (recorder == null || this.replayPlayer != null) {
+            return;
+        }
+
+        if (chunk.isGenerated()) {
+            recorder.recordGeneratedChunk(this.elapsedTicks, chunk.getSeed());
+        } else {
+            recorder.recordHandMadeChunk(this.elapsedTicks, TileConfiguration.forChunk(chunk).ordinal());
+        }
+    }
+
+    /**
+     * @return The chunks a replay's map was built from.
+     */
+    private static ChunkScript getChunkScript(Replay replay) {
+        ChunkScript script = new ChunkScript();
+        for (int i = 0; i < replay.getChunkCount(); i++) {
+            if (replay.isGeneratedChunk(i)) {
+                script.addGenerated(replay.getChunk(i));
+            } else {
+                script.addHandMade(TileConfiguration.forOrdinal((int) replay.getChunk(i)));
+            }
+        }
+        return script;
     }
 
     @Override
     public void keyPressed(int k) {
+        /* Replays bring their own input */
+        if (this.replayPlayer != null) {
+            return;
+        }
+
+        ReplayRecorder recorder = this.gsm.getRecorder();
+        if (recorder != null) {
+            recorder.record(this.elapsedTicks, k);
+        }
+        applyKey(k);
+    }
+
+    private void applyKey(int k) {
         switch (k) {
             case KeyEvent.VK_A:
                 this.player.setJumping();
@@ -149,9 +356,21 @@ public class PlayState extends GameState{
             case KeyEvent.VK_S:
                 this.player.setParrying();
                 break;
+            case REWIND_KEY:
+                rewind();
+                break;
         }
     }
 
+    /**
+     * Go back REWIND_TICKS ticks, or as far as the state history reaches. The run continues from there as if the
+     * rewound ticks never happened, except that the replay keeps them.
+     */
+    private void rewind() {
+        long tick = Math.max(this.runTick - REWIND_TICKS, this.history.getFirstTick());
+        this.history.restore(tick, this);
+    }
+
     @Override
     public void keyReleased(int k) {
         /* Releasing a key doesn't make a difference for us */
@@ -169,42 +388,101 @@ public class PlayState extends GameState{
         return this.player.getX();
     }
 
+    /**
+     * @return The number of map chunks built on the game thread because none was ready, see TileMap.getChunkStalls().
+     */
+    public long getChunkStalls() {
+        return this.tileMap.getChunkStalls();
+    }
+
     private void updateHazards() {
-        for (Hazard h: this.hazards) {
+        /* Move every hazard. Dead ones are removed by moving the live ones down over them, which keeps their order, and
+         * go back to the spawner's pool */
+        int live = 0;
+        for (int i = 0; i < this.hazards.size(); i++) {
+            Hazard h = this.hazards.get(i);
             if (h.isDead()) {
-                /* Remove dead hazards from level */
-                this.hazards.remove(h);
-            } else {
-                h.update();
-                /* Check for contact with player */
-                if (h.intersects(this.player) && !this.player.isFlinching()) {
-                    /* Check if the damage was parried */
-                    if (this.player.isParrying()) {
-                        this.player.heal();
-                        h.kill();
-                        this.gsm.requestFreezeFrame();
-                    } else {
-                        /* If the damage has not been parried, damage the player */
-                        try {
-                            this.player.damage();
-                        } catch (LethalDamageException e) {
-                            this.player.kill();
-                        }
+                this.hazardSpawner.release(h);
+                continue;
+            }
+            this.hazards.set(live++, h);
+
+            h.storePreviousPosition();
+            h.update();
+        }
+        while (this.hazards.size() > live) {
+            this.hazards.remove(this.hazards.size() - 1);
+        }
+
+        /* Check for contact with player. A scan is as fast as the HazardGrid here, once the grid's rebuild is counted */
+        for (int i = 0; i < this.hazards.size(); i++) {
+            Hazard h = this.hazards.get(i);
+            if (h.intersects(this.player) && !this.player.isFlinching()) {
+                /* Check if the damage was parried */
+                if (this.player.isParrying()) {
+                    this.player.heal();
+                    h.kill();
+                    this.gsm.requestFreezeFrame();
+                } else {
+                    /* If the damage has not been parried, damage the player */
+                    try {
+                        this.player.damage();
+                    } catch (LethalDamageException e) {
+                        /* Ends the run, which clears the hazards for the next one */
+                        this.player.kill();
+                        return;
                     }
                 }
             }
         }
     }
 
-    private void drawHazards(Graphics2D g) {
-        for (Hazard h: this.hazards) {
-            if (!h.notOnScreen()) {
-                h.draw(g);
+    private void drawSprites(Graphics2D g, FrameSnapshot snapshot, double interpolation) {
+        double cameraX = snapshot.getCameraX(interpolation);
+        double cameraY = snapshot.getCameraY(interpolation);
+
+        for (int i = 0; i < snapshot.getSpriteCount(); i++) {
+            int screenX = (int) (snapshot.getSpriteX(i, interpolation) + cameraX);
+            int screenY = (int) (snapshot.getSpriteY(i, interpolation) + cameraY);
+            float alpha = snapshot.getSpriteAlpha(i);
+
+            if (alpha < 1.0f) {
+                g.setComposite(getSpriteComposite(alpha));
+                g.drawImage(snapshot.getSpriteImage(i), screenX, screenY, null);
+                g.setComposite(AlphaComposite.SrcOver);
+            } else {
+                g.drawImage(snapshot.getSpriteImage(i), screenX, screenY, null);
             }
         }
     }
 
-    public synchronized void spawnHazard(Hazard hazard) {
+    /**
+     * Get the composite translucent sprites are drawn with. AlphaComposite.getInstance() allocates a new composite for
+     * every alpha but 1, so the last one is kept; sprites only use one or two alphas.
+     * @param alpha The sprite's opacity.
+     */
+    private AlphaComposite getSpriteComposite(float alpha) {
+        if (this.spriteComposite == null || this.spriteComposite.getAlpha() != alpha) {
+            this.spriteComposite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha);
+        }
+        return this.spriteComposite;
+    }
+
+    /**
+     * Shift the map origin forward and move the player and every hazard back by the same distance.
+     */
+    private void rebaseOrigin() {
+        int shift = this.tileMap.rebase();
+
+        this.player.shiftX(-shift);
+        for (int i = 0; i < this.hazards.size(); i++) {
+            this.hazards.get(i).shiftX(-shift);
+        }
+
+        this.rebasedDistance += shift;
+    }
+
+    public void spawnHazard(Hazard hazard) {
         this.hazards.add(hazard);
     }
 
@@ -289,24 +567,13 @@ public class PlayState extends GameState{
     }
 
     public double getScore() {
-        return this.player.getX() / 10f;
-    }
-
-    private double calculateAccelerationFactor(WeatherData weatherData) {
-        double AirPressure = weatherData.getAirPressure();
-
-        return GamePanel.mapRange(999f, 1050f, 2, 5, AirPressure);
+        return getDistance() / 10f;
     }
 
-    private double calculateAcceleration() {
-        double distance = this.player.getX() / 10f;
-
-        double acceleration = (distance / 10000) * this.accelerationFactor;
-
-        if (acceleration > GamePanel.MAX_SCROLLSPEED + 1) {
-            acceleration = GamePanel.MAX_SCROLLSPEED + 1;
-        }
-
-        return acceleration;
+    /**
+     * The distance the player has covered during this run, unaffected by origin rebases.
+     */
+    public double getDistance() {
+        return this.rebasedDistance + this.player.getX();
     }
 }
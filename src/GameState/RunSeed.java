@@ -0,0 +1,76 @@
+package GameState;
+
+import Networking.WeatherData;
+
+/**
+ * The seed a run is played with. Every subsystem that needs random numbers gets its own stream derived from it, so the
+ * subsystems do not influence each other's numbers, and a run can be reproduced from its seed and input alone.
+ */
+public class RunSeed {
+
+    /**
+     * The subsystems that draw random numbers, each getting a stream of its own.
+     */
+    public enum Stream {
+        MAP, HAZARDS
+    }
+
+    private final long seed;
+    private final boolean fixed;
+
+    private RunSeed(long seed, boolean fixed) {
+        this.seed = seed;
+        this.fixed = fixed;
+    }
+
+    /**
+     * @param seed A seed given by the player, e.g. on the command line.
+     */
+    public static RunSeed fixed(long seed) {
+        return new RunSeed(seed, true);
+    }
+
+    /**
+     * Derive a seed from the weather and a run ID, so runs differ from each other as well as from one weather to
+     * another.
+     * @param weatherData The weather the run is played in.
+     * @param runId A number that is different for every run.
+     */
+    public static RunSeed fromWeather(WeatherData weatherData, long runId) {
+        long hash = mix(weatherData.getWeatherString().hashCode());
+        hash = mix(hash ^ Double.doubleToLongBits(weatherData.getTemp()));
+        hash = mix(hash ^ weatherData.getHumidity());
+        hash = mix(hash ^ Double.doubleToLongBits(weatherData.getWindSpeed()));
+        hash = mix(hash ^ Double.doubleToLongBits(weatherData.getAirPressure()));
+        return new RunSeed(mix(hash ^ runId), false);
+    }
+
+    /**
+     * Create the random stream of a subsystem. Every call returns a new stream starting from the beginning.
+     * @param stream The subsystem.
+     * @return The stream.
+     */
+    public SplitMix64 getStream(Stream stream) {
+        return new SplitMix64(mix(seed ^ mix(stream.ordinal() + 1)));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return True if the seed was given rather than derived.
+     */
+    public boolean isFixed() {
+        return fixed;
+    }
+
+    /**
+     * The SplitMix64 finalizer, spreading every input bit over the whole output.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,56 @@
+package GameState;
+
+/**
+ * The SplitMix64 random number generator. Unlike java.util.SplittableRandom, which uses the same algorithm, its whole
+ * state is a single long that can be read and set again, so it can be part of a snapshot. Not thread safe.
+ */
+public class SplitMix64 {
+
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    public SplitMix64(long seed) {
+        this.state = seed;
+    }
+
+    public long nextLong() {
+        long z = (state += GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param bound The upper bound, exclusive. Must be positive.
+     * @return A uniformly distributed value between 0 and bound.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive");
+        }
+
+        /* Reject the top end of the range that would make lower values more likely */
+        int bits, value;
+        do {
+            bits = (int) (nextLong() >>> 33);
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);
+        return value;
+    }
+
+    /**
+     * @return A uniformly distributed value between 0 (inclusive) and 1 (exclusive).
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+}
@@ -0,0 +1,222 @@
+package GameState;
+
+import Main.GamePanel;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a snapshot of the simulation state for every tick of the last few seconds, so the game can be rewound to any of
+ * them. Snapshots go into a ring buffer that is allocated once: each record is the number of fields followed by every
+ * field as a zigzag varint of its difference to the same field in the previous tick. Most fields do not change from
+ * one tick to the next and take a single byte; only positions and speeds in motion take more. Every KEYFRAME_INTERVAL
+ * ticks a record is stored against zero instead, so restoring a tick only decodes the records since the keyframe before
+ * it.
+ *
+ * The oldest records are dropped as the ring fills up. Capturing allocates nothing unless the state grows beyond the
+ * largest state seen so far. Not thread safe, only used by the game thread.
+ */
+public class StateHistory {
+
+    /**
+     * Something whose state can be captured and restored, see StateStream.
+     */
+    public interface Subject {
+        void syncState(StateStream s);
+    }
+
+    public static final int SECONDS = 5;
+    public static final int TICKS = SECONDS * GamePanel.FPS;
+    private static final int KEYFRAME_INTERVAL = GamePanel.FPS / 2;
+    /* Record index, long enough that TICKS ticks remain restorable when the oldest keyframe is dropped */
+    private static final int INDEX_SIZE = TICKS + KEYFRAME_INTERVAL;
+    /* Power of two so positions wrap with a mask */
+    private static final int CAPACITY = 1 << 18;
+    private static final int MASK = CAPACITY - 1;
+
+    private final byte[] ring;
+    /* Total bytes ever written, the ring position is writePosition & MASK */
+    private long writePosition;
+
+    /* Start of each tick's record, indexed by tick % INDEX_SIZE */
+    private final long[] offsets;
+    private final boolean[] keyframes;
+    /* Restorable ticks are firstTick (always a keyframe) to endTick, exclusive */
+    private long firstTick;
+    private long endTick;
+
+    /* Fields of the last record, which the next one is encoded against */
+    private long[] previous;
+    private int previousCount;
+
+    private final StateStream stream;
+
+    public StateHistory() {
+        this.ring = new byte[CAPACITY];
+        this.offsets = new long[INDEX_SIZE];
+        this.keyframes = new boolean[INDEX_SIZE];
+        this.previous = new long[256];
+        this.stream = new StateStream();
+    }
+
+    /**
+     * Drop every snapshot, e.g. when a new run starts.
+     */
+    public void clear() {
+        this.firstTick = 0;
+        this.endTick = 0;
+        this.previousCount = 0;
+    }
+
+    /**
+     * Capture the state of a tick. Ticks must be captured in order: the first one after clear() can be any, every other
+     * has to follow the last one captured or restored.
+     * @param tick The tick the state belongs to.
+     * @param subject The state.
+     */
+    public void capture(long tick, Subject subject) {
+        boolean empty = firstTick == endTick;
+        if (!empty && tick != endTick) {
+            throw new IllegalArgumentException("Tick " + tick + " does not follow tick " + (endTick - 1));
+        }
+
+        stream.beginCapture();
+        subject.syncState(stream);
+        long[] values = stream.getValues();
+        int count = stream.getPosition();
+
+        int index = (int) (tick % INDEX_SIZE);
+        boolean keyframe = empty || tick % KEYFRAME_INTERVAL == 0;
+        offsets[index] = writePosition;
+        keyframes[index] = keyframe;
+
+        putVarint(count);
+        for (int i = 0; i < count; i++) {
+            long base = (!keyframe && i < previousCount) ? previous[i] : 0;
+            long delta = values[i] - base;
+            putVarint((delta << 1) ^ (delta >> 63));
+        }
+
+        remember(values, count);
+        if (empty) {
+            firstTick = tick;
+        }
+        endTick = tick + 1;
+
+        /* Drop ticks whose record or index entry has been overwritten, and those depending on a dropped keyframe */
+        long oldestPosition = writePosition - CAPACITY;
+        while (firstTick < endTick
+                && (endTick - firstTick > INDEX_SIZE || offsets[(int) (firstTick % INDEX_SIZE)] < oldestPosition)) {
+            firstTick++;
+        }
+        while (firstTick < endTick && !keyframes[(int) (firstTick % INDEX_SIZE)]) {
+            firstTick++;
+        }
+    }
+
+    /**
+     * Restore the state of a tick and drop every snapshot after it, so capturing continues from there.
+     * @param tick The tick to restore.
+     * @param subject The state to restore it into.
+     * @return False if the tick is not in the history, in which case nothing is changed.
+     */
+    public boolean restore(long tick, Subject subject) {
+        if (tick < firstTick || tick >= endTick) {
+            return false;
+        }
+
+        long keyframe = tick;
+        while (!keyframes[(int) (keyframe % INDEX_SIZE)]) {
+            keyframe--;
+        }
+
+        /* Decode from the keyframe forward into the previous fields, which are rewritten below anyway */
+        long position = offsets[(int) (keyframe % INDEX_SIZE)];
+        int count = 0;
+        for (long t = keyframe; t <= tick; t++) {
+            long fields = getVarint(position);
+            position += varintLength(fields);
+            if (fields > previous.length) {
+                previous = Arrays.copyOf(previous, (int) fields);
+            }
+            for (int i = 0; i < fields; i++) {
+                long zigzag = getVarint(position);
+                position += varintLength(zigzag);
+                long base = (t != keyframe && i < count) ? previous[i] : 0;
+                previous[i] = base + ((zigzag >>> 1) ^ -(zigzag & 1));
+            }
+            count = (int) fields;
+        }
+
+        stream.beginRestore(previous, count);
+        subject.syncState(stream);
+        if (stream.getPosition() != stream.getAvailable()) {
+            throw new IllegalStateException("Restored " + stream.getPosition() + " of " + count + " fields");
+        }
+
+        previousCount = count;
+        writePosition = position;
+        endTick = tick + 1;
+        return true;
+    }
+
+    /**
+     * @return The oldest tick that can be restored.
+     */
+    public long getFirstTick() {
+        return firstTick;
+    }
+
+    /**
+     * @return The newest tick that can be restored, or getFirstTick() - 1 if there is none.
+     */
+    public long getLastTick() {
+        return endTick - 1;
+    }
+
+    /**
+     * @return The average size of a record in bytes, 0 if there are none.
+     */
+    public double getAverageRecordSize() {
+        if (firstTick == endTick) {
+            return 0;
+        }
+        return (double) (writePosition - offsets[(int) (firstTick % INDEX_SIZE)]) / (endTick - firstTick);
+    }
+
+    private void remember(long[] values, int count) {
+        if (previous.length < count) {
+            previous = new long[values.length];
+        }
+        System.arraycopy(values, 0, previous, 0, count);
+        previousCount = count;
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            ring[(int) (writePosition++ & MASK)] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        ring[(int) (writePosition++ & MASK)] = (byte) value;
+    }
+
+    private long getVarint(long position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = ring[(int) (position++ & MASK)];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
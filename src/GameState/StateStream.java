@@ -0,0 +1,94 @@
+package GameState;
+
+import java.util.Arrays;
+
+/**
+ * Carries the fields of the simulation state in and out of a StateHistory. Everything that is part of the state has a
+ * single syncState() method that passes each of its fields through sync() in a fixed order and assigns the result
+ * back:
+ *
+ *     x = s.sync(x);
+ *
+ * While capturing, sync() records the value and returns it unchanged; while restoring, it returns the recorded value
+ * instead. One method serves both directions, so the field order of capture and restore cannot drift apart.
+ */
+public class StateStream {
+
+    private long[] values;
+    /* Number of fields passed through so far */
+    private int position;
+    /* Number of fields in the record being restored */
+    private int available;
+    private boolean restoring;
+
+    StateStream() {
+        this.values = new long[256];
+    }
+
+    public long sync(long value) {
+        if (restoring) {
+            if (position >= available) {
+                throw new IllegalStateException("Restored more fields than the snapshot holds");
+            }
+            return values[position++];
+        }
+
+        if (position == values.length) {
+            values = Arrays.copyOf(values, position * 2);
+        }
+        values[position++] = value;
+        return value;
+    }
+
+    public double sync(double value) {
+        return Double.longBitsToDouble(sync(Double.doubleToRawLongBits(value)));
+    }
+
+    public int sync(int value) {
+        return (int) sync((long) value);
+    }
+
+    public boolean sync(boolean value) {
+        return sync(value ? 1L : 0L) != 0;
+    }
+
+    /**
+     * @return True while restoring, for state that has to be rebuilt from the restored fields (e.g. animation frames).
+     */
+    public boolean isRestoring() {
+        return restoring;
+    }
+
+    void beginCapture() {
+        this.restoring = false;
+        this.position = 0;
+    }
+
+    void beginRestore(long[] values, int count) {
+        if (this.values.length < count) {
+            this.values = new long[values.length];
+        }
+        System.arraycopy(values, 0, this.values, 0, count);
+        this.restoring = true;
+        this.available = count;
+        this.position = 0;
+    }
+
+    long[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return The number of fields passed through since capturing or restoring began.
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return The number of fields the restored record holds.
+     */
+    int getAvailable() {
+        return available;
+    }
+}
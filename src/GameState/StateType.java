@@ -1,6 +1,7 @@
 package GameState;
 
 public enum StateType {
+    LOADING(),
     MAINMENU(),
     PLAY(),
     GAMEOVER(),
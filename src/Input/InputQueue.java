@@ -0,0 +1,90 @@
+package Input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of key events. The AWT event thread offers events stamped with
+ * System.nanoTime(), the game thread drains them at the start of every tick. Entries are stored in parallel primitive
+ * arrays, so neither side allocates.
+ */
+public class InputQueue {
+
+    public static final int CAPACITY = 64;
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * Receives drained key events, in the order they were offered.
+     */
+    public interface Consumer {
+        void keyEvent(int key, boolean pressed, long timestamp);
+    }
+
+    private final int[] keys;
+    private final boolean[] pressed;
+    private final long[] timestamps;
+
+    /* Next index to read, only advanced by the consumer */
+    private final AtomicLong head;
+    /* Next index to write, only advanced by the producer */
+    private final AtomicLong tail;
+
+    /* Number of events dropped because the queue was full. Only written by the producer */
+    private volatile long dropped;
+
+    public InputQueue() {
+        this.keys = new int[CAPACITY];
+        this.pressed = new boolean[CAPACITY];
+        this.timestamps = new long[CAPACITY];
+        this.head = new AtomicLong(0);
+        this.tail = new AtomicLong(0);
+        this.dropped = 0;
+    }
+
+    /**
+     * Producer side. Add a key event to the queue.
+     * @param key The key code.
+     * @param pressed True for a key press, false for a release.
+     * @param timestamp When the event happened, in System.nanoTime() time.
+     * @return False if the queue was full and the event was dropped.
+     */
+    public boolean offer(int key, boolean pressed, long timestamp) {
+        long t = tail.get();
+
+        if (t - head.get() >= CAPACITY) {
+            dropped++;
+            return false;
+        }
+
+        int index = (int) (t & MASK);
+        this.keys[index] = key;
+        this.pressed[index] = pressed;
+        this.timestamps[index] = timestamp;
+
+        /* Publishes the entry written above */
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side. Hand every queued event to the consumer and remove it from the queue.
+     * @param consumer The receiver of the events.
+     * @return The number of events drained.
+     */
+    public int drain(Consumer consumer) {
+        long h = head.get();
+        long t = tail.get();
+
+        for (long i = h; i < t; i++) {
+            int index = (int) (i & MASK);
+            consumer.keyEvent(keys[index], pressed[index], timestamps[index]);
+        }
+
+        /* Hands the slots back to the producer */
+        head.lazySet(t);
+        return (int) (t - h);
+    }
+
+    public long getDropped() {
+        return this.dropped;
+    }
+}
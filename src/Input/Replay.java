@@ -0,0 +1,222 @@
+package Input;
+
+import Networking.WeatherData;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A recorded run: the seed it was played with, the weather, every key press together with the tick of the run it was
+ * applied at, and every chunk the map was extended with. Ticks count every update since the run started, including
+ * those undone by rewinding. Given those, a run plays out exactly the same again, see GameState.RunSeed. The chunks
+ * are needed because runs that are only recorded build their map the normal way, which depends on how fast the map
+ * builder keeps up; replays rebuild exactly the recorded chunks instead, see TileMap.ChunkScript.
+ *
+ * Replay files are laid out as follows, with numbers in big-endian order and varints as unsigned LEB128:
+ *
+ *     int magic, byte version, long seed, int weather length, weather API response as UTF-8
+ *     for every entry: varint ticks since the previous entry, varint tag, and for generated chunks a long
+ *     varint ticks since the last entry until the run ended, varint 0
+ *
+ * The two lowest bits of the tag tell what the entry is, the rest holds its value: a key press with its key code, a
+ * generated chunk followed by the generator state it was laid out from, or a hand-made chunk with the ordinal of its
+ * TileConfiguration. Files cut short, e.g. by a crash, lack the end marker; they are played up to their last entry.
+ */
+public class Replay {
+
+    static final int MAGIC = 0x52524E52;
+    /* Version 2 changed the random number generator, version 3 the tile collision and version 4 added the chunks, so
+     * earlier replays no longer play out the same */
+    static final byte VERSION = 4;
+    /* Written in place of a tag to mark the end of the run */
+    static final int END_OF_RUN = 0;
+
+    /* Entry types, in the lowest bits of the tag */
+    static final int TAG_BITS = 2;
+    static final int KEY = 0;
+    static final int GENERATED_CHUNK = 1;
+    static final int HAND_MADE_CHUNK = 2;
+
+    private final long seed;
+    private final String weather;
+
+    /* Key presses, in the order they were applied */
+    private final long[] ticks;
+    private final int[] keys;
+    private final int eventCount;
+
+    /* Chunks, in the order they were appended: generator states of generated chunks, configuration ordinals of
+     * hand-made ones */
+    private final long[] chunks;
+    private final boolean[] generatedChunks;
+    private final int chunkCount;
+
+    /* Tick the run ended at, -1 if the file was cut short */
+    private final long endTick;
+
+    private Replay(long seed, String weather, long[] ticks, int[] keys, int eventCount, long[] chunks,
+                   boolean[] generatedChunks, int chunkCount, long endTick) {
+        this.seed = seed;
+        this.weather = weather;
+        this.ticks = ticks;
+        this.keys = keys;
+        this.eventCount = eventCount;
+        this.chunks = chunks;
+        this.generatedChunks = generatedChunks;
+        this.chunkCount = chunkCount;
+        this.endTick = endTick;
+    }
+
+    /**
+     * Read a replay file.
+     * @param file The file, as written by a ReplayRecorder.
+     * @return The replay.
+     * @throws IOException If the file cannot be read or is not a replay.
+     */
+    public static Replay read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a replay");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported replay version " + version);
+            }
+
+            long seed = buffer.getLong();
+            byte[] weather = new byte[buffer.getInt()];
+            buffer.get(weather);
+
+            long[] ticks = new long[16];
+            int[] keys = new int[16];
+            int count = 0;
+            long[] chunks = new long[16];
+            boolean[] generatedChunks = new boolean[16];
+            int chunkCount = 0;
+            long tick = 0;
+            long endTick = -1;
+
+            while (buffer.hasRemaining()) {
+                tick += getVarint(buffer);
+                long tag = getVarint(buffer);
+                if (tag == END_OF_RUN) {
+                    endTick = tick;
+                    break;
+                }
+
+                int type = (int) (tag & ((1 << TAG_BITS) - 1));
+                long value = tag >>> TAG_BITS;
+                switch (type) {
+                    case KEY:
+                        if (count == ticks.length) {
+                            ticks = Arrays.copyOf(ticks, count * 2);
+                            keys = Arrays.copyOf(keys, count * 2);
+                        }
+                        ticks[count] = tick;
+                        keys[count] = (int) value;
+                        count++;
+                        break;
+                    case GENERATED_CHUNK:
+                    case HAND_MADE_CHUNK:
+                        if (chunkCount == chunks.length) {
+                            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+                            generatedChunks = Arrays.copyOf(generatedChunks, chunkCount * 2);
+                        }
+                        generatedChunks[chunkCount] = (type == GENERATED_CHUNK);
+                        chunks[chunkCount] = (type == GENERATED_CHUNK) ? buffer.getLong() : value;
+                        chunkCount++;
+                        break;
+                    default:
+                        throw new IOException(file + " has an entry of unknown type " + type);
+                }
+            }
+
+            return new Replay(seed, new String(weather, StandardCharsets.UTF_8), ticks, keys, count, chunks,
+                    generatedChunks, chunkCount, endTick);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException(file + " is truncated or corrupt", e);
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The weather the run was played in.
+     */
+    public WeatherData getWeather() {
+        return new WeatherData(weather);
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return The tick of the run the key press with the given index was applied at.
+     */
+    public long getTick(int index) {
+        return ticks[index];
+    }
+
+    /**
+     * @return The key code of the key press with the given index.
+     */
+    public int getKey(int index) {
+        return keys[index];
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @return True if the chunk with the given index was generated, false if it is a hand-made one.
+     */
+    public boolean isGeneratedChunk(int index) {
+        return generatedChunks[index];
+    }
+
+    /**
+     * @return The generator state a generated chunk was laid out from, or the TileConfiguration ordinal of a hand-made
+     *         one.
+     */
+    public long getChunk(int index) {
+        return chunks[index];
+    }
+
+    /**
+     * @return The tick the run ended at, or -1 if the recording was cut short.
+     */
+    public long getEndTick() {
+        return endTick;
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
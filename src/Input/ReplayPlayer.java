@@ -0,0 +1,41 @@
+package Input;
+
+/**
+ * Plays a replay back, handing out the recorded key presses tick by tick.
+ */
+public class ReplayPlayer {
+
+    /* Returned by next() once all key presses for a tick have been handed out */
+    public static final int NO_KEY = -1;
+
+    private final Replay replay;
+    private int next;
+
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+        this.next = 0;
+    }
+
+    /**
+     * Get the next key press recorded for a tick. Call repeatedly until NO_KEY is returned, once per tick in order.
+     * @param tick The tick of the run.
+     * @return The key code, or NO_KEY if there are no more key presses for this tick.
+     */
+    public int next(long tick) {
+        if (next < replay.getEventCount() && replay.getTick(next) <= tick) {
+            return replay.getKey(next++);
+        }
+        return NO_KEY;
+    }
+
+    /**
+     * @return True once every recorded key press has been handed out.
+     */
+    public boolean isExhausted() {
+        return next >= replay.getEventCount();
+    }
+
+    public Replay getReplay() {
+        return replay;
+    }
+}
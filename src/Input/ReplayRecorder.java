@@ -0,0 +1,216 @@
+package Input;
+
+import Networking.WeatherData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records every run into a replay file of its own, see Replay for the format. Key presses and chunks are encoded into
+ * a small direct buffer that is only written out when it fills up and when the run ends, so recording either costs a
+ * few bytes and no allocation. Whatever is still buffered when the game exits is written by a shutdown hook, so even runs
+ * cut short by a crash can be replayed up to that point.
+ *
+ * Only the newest KEEP_REPLAYS files are kept in the directory.
+ */
+public class ReplayRecorder {
+
+    private static final int BUFFER_SIZE = 4096;
+    /* Most bytes a single entry takes: two varints of up to ten bytes and a long */
+    private static final int MAX_ENTRY_BYTES = 28;
+    private static final int KEEP_REPLAYS = 100;
+    private static final String PREFIX = "run-";
+    private static final String SUFFIX = ".replay";
+
+    private final Path directory;
+    private final ByteBuffer buffer;
+
+    /* Current run, null channel if there is none or writing it failed */
+    private FileChannel channel;
+    private Path file;
+    private long lastTick;
+
+    /**
+     * @param directory The directory replays are written to. Created when the first run starts.
+     */
+    public ReplayRecorder(Path directory) {
+        this.directory = directory;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "ReplayRecorder"));
+    }
+
+    /**
+     * Start recording a new run. A run that has not been ended is closed without its end marker.
+     * @param seed The run seed.
+     * @param weatherData The weather the run is played in.
+     */
+    public synchronized void begin(long seed, WeatherData weatherData) {
+        close();
+
+        byte[] weather = weatherData.toJson().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(17 + weather.length);
+        header.putInt(Replay.MAGIC).put(Replay.VERSION).putLong(seed).putInt(weather.length).put(weather);
+        header.flip();
+
+        try {
+            Files.createDirectories(directory);
+            file = directory.resolve(String.format("%s%d-%016x%s", PREFIX, System.currentTimeMillis(), seed, SUFFIX));
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            abandon();
+            return;
+        }
+
+        buffer.clear();
+        lastTick = 0;
+        prune();
+    }
+
+    /**
+     * Record a key press.
+     * @param tick The tick of the run the key press is applied at.
+     * @param key The key code.
+     */
+    public synchronized void record(long tick, int key) {
+        if (key != Replay.END_OF_RUN) {
+            beginEntry(tick, ((long) key << Replay.TAG_BITS) | Replay.KEY);
+        }
+    }
+
+    /**
+     * Record a generated chunk the map was extended with.
+     * @param tick The tick of the run the chunk was appended at.
+     * @param seed The generator state the chunk was laid out from.
+     */
+    public synchronized void recordGeneratedChunk(long tick, long seed) {
+        if (beginEntry(tick, Replay.GENERATED_CHUNK)) {
+            buffer.putLong(seed);
+        }
+    }
+
+    /**
+     * Record a hand-made chunk the map was extended with.
+     * @param tick The tick of the run the chunk was appended at.
+     * @param configuration The ordinal of the chunk's tile configuration.
+     */
+    public synchronized void recordHandMadeChunk(long tick, int configuration) {
+        beginEntry(tick, ((long) configuration << Replay.TAG_BITS) | Replay.HAND_MADE_CHUNK);
+    }
+
+    /**
+     * End the current run and close its file.
+     * @param tick The tick the run ended at.
+     */
+    public synchronized void end(long tick) {
+        if (beginEntry(tick, Replay.END_OF_RUN)) {
+            close();
+        }
+    }
+
+    /**
+     * Write out whatever is buffered and close the current run's file, if there is one.
+     */
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+
+        flush();
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+
+    /**
+     * @return The file the current or last run was recorded to, null if none was.
+     */
+    public synchronized Path getFile() {
+        return file;
+    }
+
+    /**
+     * Write the tick and tag of an entry, making room for the rest of it.
+     * @return False if there is no run being recorded.
+     */
+    private boolean beginEntry(long tick, long tag) {
+        if (channel == null) {
+            return false;
+        }
+
+        if (buffer.remaining() < MAX_ENTRY_BYTES) {
+            flush();
+            if (channel == null) {
+                return false;
+            }
+        }
+        Replay.putVarint(buffer, tick - lastTick);
+        Replay.putVarint(buffer, tag);
+        lastTick = tick;
+        return true;
+    }
+
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            /* Give up on this run rather than failing the game */
+            e.printStackTrace();
+            abandon();
+        }
+        buffer.clear();
+    }
+
+    private void abandon() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        channel = null;
+    }
+
+    /**
+     * Delete the oldest replays beyond KEEP_REPLAYS. File names start with the recording time, so they sort by age.
+     */
+    private void prune() {
+        List<Path> replays = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path: stream) {
+                replays.add(path);
+            }
+
+            Collections.sort(replays);
+            for (int i = 0; i < replays.size() - KEEP_REPLAYS; i++) {
+                Files.deleteIfExists(replays.get(i));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package Main;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+
+/**
+ * Active rendering backend. Frames are drawn into the back buffer of a BufferStrategy and shown with a page flip
+ * where the platform supports it, or a blit otherwise. The canvas ignores repaint requests, the game thread is the
+ * only one ever drawing to it.
+ */
+public class CanvasPresenter extends Canvas implements FramePresenter {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int BUFFER_COUNT = 3;
+
+    private BufferStrategy strategy;
+
+    public CanvasPresenter() {
+        super();
+
+        setIgnoreRepaint(true);
+        setFocusable(true);
+        setPreferredSize(new Dimension(GamePanel.WIDTH * GamePanel.SCALE, GamePanel.HEIGHT * GamePanel.SCALE));
+    }
+
+    /**
+     * Draw the frame into the back buffer and show it. If the buffer contents are lost in the process (display mode
+     * change, the window being minimized, ...) the frame is simply drawn again.
+     * @param frame The fully drawn frame.
+     */
+    @Override
+    public void present(BufferedImage frame) {
+        if (strategy == null) {
+            if (!isDisplayable()) {
+                return;
+            }
+            createStrategy();
+        }
+
+        do {
+            do {
+                Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                /* Pixel art - never smooth when scaling up */
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+                g.drawImage(frame, 0, 0, GamePanel.WIDTH * GamePanel.SCALE, GamePanel.HEIGHT * GamePanel.SCALE, null);
+                g.dispose();
+            } while (strategy.contentsRestored());
+
+            strategy.show();
+        } while (strategy.contentsLost());
+
+        /* Flush the window system's queue, otherwise frames may pile up on some X11 setups */
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    @Override
+    public String getDescription() {
+        if (strategy == null) {
+            return "canvas (not yet created)";
+        }
+
+        BufferCapabilities capabilities = strategy.getCapabilities();
+        return "canvas (" + (capabilities.isPageFlipping() ? "page flip" : "blit") + ", "
+                + (capabilities.getBackBufferCapabilities().isAccelerated() ? "accelerated" : "unaccelerated") + ")";
+    }
+
+    /**
+     * Try to get a page flipping strategy first. Windowed flipping is not available on every platform, in which case
+     * AWT is left to pick the best blitting strategy.
+     */
+    private void createStrategy() {
+        BufferCapabilities flipping = new BufferCapabilities(
+                new ImageCapabilities(true),
+                new ImageCapabilities(true),
+                BufferCapabilities.FlipContents.UNDEFINED);
+
+        try {
+            createBufferStrategy(BUFFER_COUNT, flipping);
+        } catch (AWTException e) {
+            createBufferStrategy(2);
+        }
+
+        strategy = getBufferStrategy();
+    }
+
+    @Override
+    public void removeNotify() {
+        if (strategy != null) {
+            strategy.dispose();
+            strategy = null;
+        }
+        super.removeNotify();
+    }
+}
@@ -0,0 +1,83 @@
+package Main;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps a loop running at a fixed rate. Most of the wait for the next deadline is spent parked, the last stretch is
+ * spent yielding and then spinning, since parking and sleeping routinely overshoot by anywhere from tens of
+ * microseconds to a couple of milliseconds depending on the OS. Deadlines are kept on an absolute schedule, so small
+ * errors don't accumulate into drift.
+ */
+public class FramePacer {
+
+    /* Pass as the target rate to run as fast as possible */
+    public static final int UNLIMITED = 0;
+
+    /* Below this much remaining time we stop parking and start yielding */
+    private static final long PARK_MARGIN = 1500000;
+    /* Below this much remaining time we stop yielding and busy-spin */
+    private static final long SPIN_MARGIN = 100000;
+
+    private final long interval;
+    private final FrameStats stats;
+
+    private long deadline;
+    private long lastFrame;
+
+    /**
+     * @param targetRate The number of frames per second, or UNLIMITED.
+     */
+    public FramePacer(int targetRate) {
+        if (targetRate < 0) {
+            throw new IllegalArgumentException("Target rate cannot be negative");
+        }
+
+        this.interval = (targetRate == UNLIMITED) ? 0 : 1000000000L / targetRate;
+        this.stats = new FrameStats(this.interval);
+        start();
+    }
+
+    /**
+     * Restart the schedule from now. Call right before entering the paced loop.
+     */
+    public void start() {
+        this.lastFrame = System.nanoTime();
+        this.deadline = this.lastFrame + this.interval;
+    }
+
+    /**
+     * Wait until the next frame is due. If the deadline was missed by more than a whole frame the schedule is moved
+     * forward instead of trying to catch up with a burst of back to back frames.
+     */
+    public void waitForNextFrame() {
+        long now = System.nanoTime();
+        boolean missed = now > deadline;
+
+        if (interval > 0 && !missed) {
+            long remaining = deadline - now;
+            if (remaining > PARK_MARGIN) {
+                LockSupport.parkNanos(remaining - PARK_MARGIN);
+            }
+
+            while ((now = System.nanoTime()) < deadline) {
+                if (deadline - now > SPIN_MARGIN) {
+                    Thread.yield();
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        stats.record(now - lastFrame, Math.max(0, now - deadline), missed && interval > 0);
+        lastFrame = now;
+
+        deadline += interval;
+        if (now - deadline > interval) {
+            deadline = now + interval;
+        }
+    }
+
+    public FrameStats getStats() {
+        return this.stats;
+    }
+}
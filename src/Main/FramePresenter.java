@@ -0,0 +1,28 @@
+package Main;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Copies a finished frame from the game's backbuffer image to the screen. Implementations differ in how the frame
+ * reaches the display, which is what the render backend option selects between.
+ */
+public interface FramePresenter {
+
+    /**
+     * Show the given frame on screen, scaled up by GamePanel.SCALE.
+     * @param frame The fully drawn frame, GamePanel.WIDTH by GamePanel.HEIGHT pixels in size.
+     */
+    void present(BufferedImage frame);
+
+    /**
+     * The configuration of the display frames are presented on, or null if not known yet. Images drawn every frame
+     * are prepared for it, so it is checked before every frame.
+     */
+    GraphicsConfiguration getGraphicsConfiguration();
+
+    /**
+     * A short human readable description of the presentation path, for logging.
+     */
+    String getDescription();
+}
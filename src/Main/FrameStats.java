@@ -0,0 +1,103 @@
+package Main;
+
+/**
+ * Running statistics about the frame intervals produced by a FramePacer. Written by the pacing thread once per frame
+ * and safe to read from any other thread, e.g. by tests or benchmarks running in the same process.
+ */
+public class FrameStats {
+
+    private final long targetInterval;
+
+    private long frames;
+
+    /* Interval mean and variance, accumulated with Welford's algorithm */
+    private double meanInterval;
+    private double intervalVarianceSum;
+    private long minInterval;
+    private long maxInterval;
+
+    /* Deadline keeping */
+    private long missedDeadlines;
+    private long totalOversleep;
+    private long maxOversleep;
+
+    /**
+     * @param targetInterval The intended frame interval in nanoseconds, or 0 if the frame rate is unlimited.
+     */
+    public FrameStats(long targetInterval) {
+        this.targetInterval = targetInterval;
+        reset();
+    }
+
+    /**
+     * Record a single frame.
+     * @param interval The time since the previous frame, in nanoseconds.
+     * @param oversleep How long after its deadline the frame started, in nanoseconds. Zero when paced exactly.
+     * @param missedDeadline Whether the deadline had already passed before the pacer started waiting.
+     */
+    public synchronized void record(long interval, long oversleep, boolean missedDeadline) {
+        frames++;
+
+        double delta = interval - meanInterval;
+        meanInterval += delta / frames;
+        intervalVarianceSum += delta * (interval - meanInterval);
+
+        minInterval = Math.min(minInterval, interval);
+        maxInterval = Math.max(maxInterval, interval);
+
+        if (missedDeadline) {
+            missedDeadlines++;
+        } else {
+            totalOversleep += oversleep;
+            maxOversleep = Math.max(maxOversleep, oversleep);
+        }
+    }
+
+    public synchronized void reset() {
+        frames = 0;
+        meanInterval = 0;
+        intervalVarianceSum = 0;
+        minInterval = Long.MAX_VALUE;
+        maxInterval = 0;
+        missedDeadlines = 0;
+        totalOversleep = 0;
+        maxOversleep = 0;
+    }
+
+    public long getTargetInterval() { return targetInterval; }
+    public synchronized long getFrames() { return frames; }
+    public synchronized double getMeanInterval() { return meanInterval; }
+    public synchronized long getMinInterval() { return frames == 0 ? 0 : minInterval; }
+    public synchronized long getMaxInterval() { return maxInterval; }
+    public synchronized long getMissedDeadlines() { return missedDeadlines; }
+    public synchronized long getMaxOversleep() { return maxOversleep; }
+
+    /**
+     * The standard deviation of the frame interval, in nanoseconds.
+     */
+    public synchronized double getJitter() {
+        return frames < 2 ? 0 : Math.sqrt(intervalVarianceSum / (frames - 1));
+    }
+
+    /**
+     * The average time frames started after their deadline, for frames whose deadline was not missed outright.
+     */
+    public synchronized double getMeanOversleep() {
+        long pacedFrames = frames - missedDeadlines;
+        return pacedFrames == 0 ? 0 : (double) totalOversleep / pacedFrames;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d frames, interval avg %.3fms (min %.3fms, max %.3fms), jitter %.3fms, "
+                        + "oversleep avg %.1fus (max %.1fus), %d missed",
+                frames,
+                meanInterval / 1000000.0,
+                getMinInterval() / 1000000.0,
+                maxInterval / 1000000.0,
+                getJitter() / 1000000.0,
+                getMeanOversleep() / 1000.0,
+                maxOversleep / 1000.0,
+                missedDeadlines);
+    }
+}
@@ -1,12 +1,16 @@
 package Main;
 
 import GameState.GameStateManager;
+import Input.Replay;
 import Networking.WeatherData;
+import Rendering.FrameSnapshot;
+import Rendering.TripleBuffer;
 
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.awt.image.BufferedImage;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
 
 public class GamePanel extends javax.swing.JPanel implements Runnable, KeyListener {
 
@@ -14,8 +18,8 @@ public class GamePanel extends javax.swing.JPanel implements Runnable, KeyListen
     public static final String GAMETITLE = "run ran run";
     private static boolean muted;
 
-    /* Weather data container */
-    private final WeatherData weatherData;
+    /* Weather data container, filled in while the game is loading */
+    private final CompletableFuture<WeatherData> weatherData;
 
     /* Dimensions */
     public static final int WIDTH = 600;
@@ -26,94 +30,148 @@ public class GamePanel extends javax.swing.JPanel implements Runnable, KeyListen
     public static final double MIN_SCROLLSPEED = 2.2;
     public static final double MAX_SCROLLSPEED = 4.8;
 
-    private final double scrollSpeed;
-
     /* Game thread */
     private Thread thread;
     private boolean running;
-    private final int FPS = 60;
 
-    /* Image */
-    private BufferedImage image;
-    private Graphics2D g;
+    /* Simulation rate. The game logic always advances in steps of exactly TICK_NANOS, regardless of render rate */
+    public static final int FPS = 60;
+    public static final long TICK_NANOS = 1000000000L / FPS;
+    /* Upper bound for the time a single loop iteration may feed into the accumulator, prevents a spiral of death */
+    private static final long MAX_FRAME_NANOS = TICK_NANOS * 5;
+
+    /* Rate at which frames are rendered, independent of the simulation rate */
+    private final int renderRate;
+    /* Seed every run is played with, null to derive one per run */
+    private final Long seed;
+    /* Replays */
+    private final String recordDirectory;
+    private final Replay replay;
+    /* Most dead hazards kept for reuse */
+    private final int hazardPoolCapacity;
+
+    /* Wakes the game thread up once per tick */
+    private final FramePacer tickPacer;
+
+    /* Screen output */
+    private final FramePresenter presenter;
+    private final Component inputComponent;
+    private Renderer renderer;
+
+    /* Frame snapshots, handed from the game thread to the render thread */
+    private TripleBuffer<FrameSnapshot> snapshots;
 
     /* Game state Manager */
     private GameStateManager gsm;
 
     /* The constructor sets some of the window properties */
-    public GamePanel(WeatherData weatherData) {
+    public GamePanel(CompletableFuture<WeatherData> weatherData, LaunchOptions options, Replay replay) {
         super();
 
         GamePanel.muted = false;
 
         this.weatherData = weatherData;
-
-        scrollSpeed = mapRange(-12f, 45f, MIN_SCROLLSPEED, MAX_SCROLLSPEED, this.weatherData.getTemp());
+        this.renderRate = options.getRenderRate();
+        this.seed = options.getSeed();
+        this.recordDirectory = options.getRecordDirectory();
+        this.replay = replay;
+        this.hazardPoolCapacity = options.getHazardPoolCapacity();
+        this.tickPacer = new FramePacer(FPS);
 
         setPreferredSize(new Dimension(WIDTH * SCALE, HEIGHT * SCALE));
-        setFocusable(true);
-        requestFocus();
+
+        if (options.getRenderBackend() == RenderBackend.CANVAS) {
+            /* The canvas fills the whole panel and takes over input focus */
+            CanvasPresenter canvas = new CanvasPresenter();
+            setLayout(new BorderLayout());
+            add(canvas, BorderLayout.CENTER);
+
+            this.presenter = canvas;
+            this.inputComponent = canvas;
+        } else {
+            this.presenter = new PanelPresenter(this);
+            this.inputComponent = this;
+        }
+
+        inputComponent.setFocusable(true);
+        inputComponent.requestFocus();
     }
 
     public void init() {
-        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
-        g = (Graphics2D) image.getGraphics();
         running = true;
 
-        GameStateManager.GameStateManagerBuilder builder = new GameStateManager.GameStateManagerBuilder(this.g, this.weatherData, this.scrollSpeed);
-        gsm = builder.getGsm();
+        GameStateManager.GameStateManagerBuilder builder = new GameStateManager.GameStateManagerBuilder(this.weatherData);
+        gsm = builder.withSeed(this.seed)
+                .recordTo((this.recordDirectory != null) ? Paths.get(this.recordDirectory) : null)
+                .withReplay(this.replay)
+                .withHazardPoolCapacity(this.hazardPoolCapacity)
+                .getGsm();
+
+        snapshots = new TripleBuffer<>(FrameSnapshot::new);
+        renderer = new Renderer(gsm, snapshots, presenter, renderRate);
     }
 
+    /**
+     * Fixed-timestep game loop. Elapsed real time is collected in an accumulator that is drained in steps of exactly
+     * one tick, so the simulation runs at FPS updates per second no matter what. After every tick a snapshot of the
+     * game is published for the render thread, which draws at its own rate and interpolates between the last two ticks.
+     */
     public void run() {
         init();
+        renderer.start();
 
-        long start;
-        long elapsed;
-        long wait;
-
-        long targetTime = 1000 / FPS;
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        tickPacer.start();
 
         /* Game loop - where the magic happens */
         while (running) {
-            start = System.nanoTime();
+            long now = System.nanoTime();
+            long frameTime = now - previous;
+            previous = now;
 
-                update();
-                draw();
-                drawToScreen();
-
-            elapsed = System.nanoTime() - start;
-
-            wait = targetTime - nanosecondsToMilliseconds(elapsed);
+            /* After a long stall (window drag, debugger, ...) skip ahead instead of fast-forwarding the game */
+            if (frameTime > MAX_FRAME_NANOS) {
+                frameTime = MAX_FRAME_NANOS;
+            }
+            accumulator += frameTime;
 
-            /* The first wait period is always a large negative value for some reason */
-            if (wait > 0) {
-                try {
-                    Thread.sleep(wait);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+            while (accumulator >= TICK_NANOS) {
+                update();
+                publishSnapshot();
+                accumulator -= TICK_NANOS;
             }
+
+            /* Wait until the next tick is due */
+            tickPacer.waitForNextFrame();
         }
+
+        renderer.stop();
     }
 
     private void update() {
         gsm.update();
     }
 
-    private void draw() {
-        gsm.draw(g);
+    public FrameStats getTickStats() {
+        return tickPacer.getStats();
     }
 
-    private void drawToScreen() {
-        Graphics2D g2 = (Graphics2D) getGraphics();
-        g2.drawImage(image, 0,0,WIDTH * SCALE, HEIGHT * SCALE, null);
+    public FrameStats getRenderStats() {
+        return renderer.getFrameStats();
+    }
+
+    private void publishSnapshot() {
+        gsm.capture(snapshots.getWriteBuffer());
+        snapshots.publish();
     }
 
     public void addNotify() {
         super.addNotify();
         if (thread == null) {
             thread = new Thread(this);
-            addKeyListener(this);
+            inputComponent.addKeyListener(this);
+            inputComponent.requestFocus();
             thread.start();
         }
     }
@@ -123,18 +181,14 @@ public class GamePanel extends javax.swing.JPanel implements Runnable, KeyListen
 
     }
 
-    /* Propagates the keyEvent to whichever object the game state manager deems appropriate */
+    /* Queues the keyEvent for the game thread, which propagates it at the start of the next tick */
     public void keyPressed(KeyEvent e) {
-        gsm.keyPressed(e.getKeyCode());
+        gsm.getInputQueue().offer(e.getKeyCode(), true, System.nanoTime());
     }
 
-    /* Propagates the keyEvent to whichever object the game state manager deems appropriate */
+    /* Queues the keyEvent for the game thread, which propagates it at the start of the next tick */
     public void keyReleased(KeyEvent e) {
-        gsm.keyReleased(e.getKeyCode());
-    }
-
-    private long nanosecondsToMilliseconds(long nanoseconds) {
-        return nanoseconds / 1000000;
+        gsm.getInputQueue().offer(e.getKeyCode(), false, System.nanoTime());
     }
 
     public static void setMuted(boolean muted) {
@@ -145,6 +199,35 @@ public class GamePanel extends javax.swing.JPanel implements Runnable, KeyListen
         return GamePanel.muted;
     }
 
+    /**
+     * The base scroll speed is determined by the temperature - the warmer it is, the faster the level moves.
+     */
+    public static double calculateScrollSpeed(WeatherData weatherData) {
+        return mapRange(-12f, 45f, MIN_SCROLLSPEED, MAX_SCROLLSPEED, weatherData.getTemp());
+    }
+
+    /**
+     * The level speeds up the further the player gets, the faster the higher the air pressure.
+     */
+    public static double calculateAccelerationFactor(WeatherData weatherData) {
+        return mapRange(999f, 1050f, 2, 5, weatherData.getAirPressure());
+    }
+
+    /**
+     * The speed gained on top of the base scroll speed at a given distance into a run.
+     * @param accelerationFactor See calculateAccelerationFactor().
+     * @param distance The distance covered, in pixels.
+     */
+    public static double calculateAcceleration(double accelerationFactor, double distance) {
+        double acceleration = (distance / 10f / 10000) * accelerationFactor;
+
+        if (acceleration > MAX_SCROLLSPEED + 1) {
+            acceleration = MAX_SCROLLSPEED + 1;
+        }
+
+        return acceleration;
+    }
+
     public static double mapRange(double srcMin, double srcMax, double destMin, double destMax, double num) {
         return destMin + (((num - srcMin) * (destMax - destMin)) / (srcMax - srcMin));
     }
@@ -0,0 +1,171 @@
+package Main;
+
+import Assets.CompatibleImages;
+import Audio.AudioPlayer;
+import GameState.GameStateManager;
+import GameState.RunSeed;
+import GameState.StateType;
+import Input.Replay;
+import Networking.WeatherData;
+import Profiling.PoolStats;
+import Rendering.FrameSnapshot;
+
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Drives the game state manager without a window or audio, as fast as the machine allows. The runner starts a run
+ * right away and restarts it from the game over screen whenever the player dies, so it can keep going indefinitely.
+ * Ticks per second are reported once per second of wall time and once more at the end. Requires java.awt.headless to
+ * be set before it is constructed.
+ *
+ * Every run is played with the same seed, the one given with --seed or otherwise one derived from the weather, so
+ * the same simulation is measured every time. Given a replay, the runner plays the recorded run over and over instead,
+ * to measure a real player's run.
+ */
+public class HeadlessRunner {
+
+    private static final long REPORT_INTERVAL = 1000000000L;
+
+    private final GameStateManager gsm;
+    private final long ticks;
+    private final long seed;
+    /* Replay played back by every run, null to play without input */
+    private final Replay replay;
+
+    /* Optional offscreen rendering */
+    private final boolean render;
+    private FrameSnapshot snapshot;
+    private Graphics2D g;
+
+    /* Statistics */
+    private long runs;
+
+    /**
+     * @param weatherData The weather to play in, which has to be the replay's if one is given.
+     * @param options The launch options.
+     * @param replay The replay to play back, or null.
+     */
+    public HeadlessRunner(WeatherData weatherData, LaunchOptions options, Replay replay) {
+        AudioPlayer.disableLines();
+
+        this.replay = replay;
+        if (replay != null) {
+            this.seed = replay.getSeed();
+        } else {
+            this.seed = (options.getSeed() != null) ? options.getSeed() : RunSeed.fromWeather(weatherData, 0).getSeed();
+        }
+
+        String recordDirectory = options.getRecordDirectory();
+
+        GameStateManager.GameStateManagerBuilder builder = new GameStateManager.GameStateManagerBuilder(CompletableFuture.completedFuture(weatherData));
+        this.gsm = builder.withSeed(this.seed)
+                .recordTo((recordDirectory != null) ? Paths.get(recordDirectory) : null)
+                .withReplay(replay)
+                .withHazardPoolCapacity(options.getHazardPoolCapacity())
+                .getGsm();
+        this.gsm.awaitLoading();
+
+        this.ticks = options.getHeadlessTicks();
+        this.render = options.isOffscreenRendering();
+
+        if (this.render) {
+            BufferedImage image = CompatibleImages.create(GamePanel.WIDTH, GamePanel.HEIGHT, Transparency.OPAQUE);
+            this.g = image.createGraphics();
+            this.snapshot = new FrameSnapshot();
+        }
+    }
+
+    public GameStateManager getGsm() {
+        return this.gsm;
+    }
+
+    /**
+     * @return The number of ticks to play.
+     */
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * @return True if every tick is drawn offscreen as well.
+     */
+    public boolean isRendering() {
+        return this.render;
+    }
+
+    /**
+     * @return True if the runs play a replay back rather than taking no input.
+     */
+    public boolean isReplaying() {
+        return this.replay != null;
+    }
+
+    public void run() {
+        System.out.println("Headless run: " + ticks + " ticks, seed " + seed
+                + (replay != null ? ", replaying " + replay.getEventCount() + " key presses" : "")
+                + (render ? ", rendering offscreen" : ""));
+
+        /* Replays start playing right after loading */
+        if (gsm.getCurrentState() != StateType.PLAY) {
+            gsm.setState(StateType.PLAY);
+        }
+        runs = 1;
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        long ticksSinceReport = 0;
+
+        for (long i = 0; i < ticks; i++) {
+            tick();
+            ticksSinceReport++;
+
+            long now = System.nanoTime();
+            if (now - lastReport >= REPORT_INTERVAL) {
+                System.out.printf("%d ticks/s%n", ticksSinceReport * 1000000000L / (now - lastReport));
+                lastReport = now;
+                ticksSinceReport = 0;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Simulated %d ticks (%.1fs of game time) in %.3fs, %.0f ticks/s, %d runs, best score %.1f%n",
+                ticks,
+                (double) ticks / GamePanel.FPS,
+                elapsed / 1000000000.0,
+                ticks * 1000000000.0 / elapsed,
+                runs,
+                gsm.getBestScore());
+        for (PoolStats pool: PoolStats.getRegistered()) {
+            System.out.println(pool.describe());
+        }
+    }
+
+    /**
+     * Advance the game by a single tick, restarting the run if the player died.
+     */
+    public void tick() {
+        if ((gsm.getCurrentState() == StateType.GAMEOVER) && !gsm.isTransitioning()) {
+            /* The game over menu starts out on "again" */
+            if (replay != null) {
+                gsm.setReplay(replay);
+            }
+            gsm.keyPressed(KeyEvent.VK_ENTER);
+            runs++;
+        }
+
+        gsm.update();
+
+        if (render) {
+            gsm.capture(snapshot);
+            gsm.draw(g, snapshot, 1.0);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package Main;
+
+import Entity.Hazards.HazardPool;
+
+/**
+ * Startup options, parsed from the command line arguments handed to Main. Options have the form --name=value, boolean
+ * flags are just --name. Unknown options are rejected so typos don't silently fall back to defaults.
+ */
+public class LaunchOptions {
+
+    private int renderRate;
+    private RenderBackend renderBackend;
+
+    /* Headless mode */
+    private boolean headless;
+    private long headlessTicks;
+    private boolean offscreenRendering;
+    private boolean allocationCheck;
+
+    /* Seed every run is played with, null to derive a new one per run */
+    private Long seed;
+
+    /* Most dead hazards kept for reuse */
+    private int hazardPoolCapacity;
+
+    /* Replays. Runs are only recorded if a directory is given */
+    private String recordDirectory;
+    private String replayFile;
+
+    public LaunchOptions(String[] args) {
+        this.renderRate = GamePanel.FPS;
+        this.renderBackend = RenderBackend.PANEL;
+        this.headless = false;
+        this.headlessTicks = GamePanel.FPS * 60 * 10;
+        this.offscreenRendering = false;
+        this.allocationCheck = false;
+        this.seed = null;
+        this.hazardPoolCapacity = HazardPool.DEFAULT_CAPACITY;
+        this.recordDirectory = null;
+        this.replayFile = null;
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (!option[0].startsWith("--")) {
+                throw new IllegalArgumentException("Malformed option: " + arg);
+            }
+
+            if (option.length == 1) {
+                parseFlag(option[0]);
+                continue;
+            }
+
+            switch (option[0]) {
+                case "--fps":
+                    if (option[1].equals("unlimited")) {
+                        setRenderRate(FramePacer.UNLIMITED);
+                    } else {
+                        setRenderRate(Integer.parseInt(option[1]));
+                    }
+                    break;
+                case "--renderer":
+                    this.renderBackend = RenderBackend.fromName(option[1]);
+                    break;
+                case "--ticks":
+                    this.headlessTicks = Long.parseLong(option[1]);
+                    break;
+                case "--seed":
+                    this.seed = Long.parseLong(option[1]);
+                    break;
+                case "--hazard-pool":
+                    this.hazardPoolCapacity = Integer.parseInt(option[1]);
+                    if (this.hazardPoolCapacity < 0) {
+                        throw new IllegalArgumentException("Hazard pool capacity cannot be negative");
+                    }
+                    break;
+                case "--record":
+                    this.recordDirectory = option[1];
+                    break;
+                case "--replay":
+                    this.replayFile = option[1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+    }
+
+    private void parseFlag(String flag) {
+        switch (flag) {
+            case "--headless":
+                this.headless = true;
+                break;
+            case "--offscreen":
+                this.offscreenRendering = true;
+                break;
+            case "--check-allocations":
+                /* Drawing has to be allocation free as well */
+                this.headless = true;
+                this.offscreenRendering = true;
+                this.allocationCheck = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown flag: " + flag);
+        }
+    }
+
+    /**
+     * The number of frames rendered per second, e.g. 30, 60, 120 or 144, or FramePacer.UNLIMITED. This is independent
+     * of the simulation rate, which is fixed to GamePanel.FPS ticks per second.
+     */
+    public int getRenderRate() {
+        return this.renderRate;
+    }
+
+    /**
+     * The way finished frames are put on screen. Defaults to the JPanel path.
+     */
+    public RenderBackend getRenderBackend() {
+        return this.renderBackend;
+    }
+
+    /**
+     * Run the simulation without a window or audio, as fast as possible. See HeadlessRunner.
+     */
+    public boolean isHeadless() {
+        return this.headless;
+    }
+
+    /**
+     * The number of ticks to simulate in headless mode.
+     */
+    public long getHeadlessTicks() {
+        return this.headlessTicks;
+    }
+
+    /**
+     * Whether headless mode draws every tick into an offscreen image, to include render cost in the measurement.
+     */
+    public boolean isOffscreenRendering() {
+        return this.offscreenRendering;
+    }
+
+    /**
+     * Whether headless mode checks that ticks allocate no memory instead of measuring their rate, see
+     * Profiling.AllocationCheck. Implies headless mode and offscreen rendering.
+     */
+    public boolean isAllocationCheck() {
+        return this.allocationCheck;
+    }
+
+    /**
+     * The seed every run is played with, or null if none was given and each run derives its own from the weather.
+     * Given the same seed and input, runs play out exactly the same.
+     */
+    public Long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * The most dead hazards kept to be spawned again, 0 to create every hazard anew. See HazardPool.
+     */
+    public int getHazardPoolCapacity() {
+        return this.hazardPoolCapacity;
+    }
+
+    /**
+     * The directory every run is recorded to, given with --record, or null if runs are not recorded. Replays are never
+     * recorded again.
+     */
+    public String getRecordDirectory() {
+        return (this.replayFile != null) ? null : this.recordDirectory;
+    }
+
+    /**
+     * A replay file to play back as the first run, or null to play normally.
+     */
+    public String getReplayFile() {
+        return this.replayFile;
+    }
+
+    public void setRenderRate(int renderRate) {
+        if (renderRate < 0) {
+            throw new IllegalArgumentException("Render rate cannot be negative");
+        }
+        this.renderRate = renderRate;
+    }
+}
@@ -1,21 +1,99 @@
 package Main;
 
+import Input.Replay;
 import Networking.WeatherData;
+import Profiling.AllocationCheck;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
 
 public class Main {
 
+    /* Reference point for the startup timings */
+    private static final long START_TIME = System.nanoTime();
+
+    /* Startup timings in nanoseconds after START_TIME, 0 until reached. Shown in the profiler overlay */
+    private static volatile long firstFrameTime;
+    private static volatile long interactiveTime;
+
     public static void main(String[] args) {
 
-        WeatherData wp = new WeatherData();
-        System.out.println(wp.getWeatherString() + ", Wind: " + wp.getWindSpeed() + ", Air pressure: " + wp.getAirPressure());
+        LaunchOptions options = new LaunchOptions(args);
+
+        /* A replay brings the weather it was recorded in */
+        Replay replay = null;
+        if (options.getReplayFile() != null) {
+            try {
+                replay = Replay.read(Paths.get(options.getReplayFile()));
+            } catch (IOException e) {
+                System.err.println("Cannot load replay: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (options.isHeadless()) {
+            /* Has to happen before anything touches AWT */
+            System.setProperty("java.awt.headless", "true");
+            HeadlessRunner runner = new HeadlessRunner((replay != null) ? replay.getWeather() : new WeatherData(), options, replay);
+            if (options.isAllocationCheck()) {
+                System.exit(AllocationCheck.run(runner) ? 0 : 1);
+            }
+            runner.run();
+            System.exit(0);
+        }
+
+        /* Fetch the weather while the window is being set up, the game shows a loading screen until it is there */
+        CompletableFuture<WeatherData> weather = (replay != null)
+                ? CompletableFuture.completedFuture(replay.getWeather())
+                : CompletableFuture.supplyAsync(WeatherData::new);
+        weather.thenAccept(wp -> System.out.println(wp.getWeatherString() + ", Wind: " + wp.getWindSpeed() + ", Air pressure: " + wp.getAirPressure()));
 
         JFrame window = new JFrame("run ran run");
-        window.setContentPane(new GamePanel(wp));
+        window.setContentPane(new GamePanel(weather, options, replay));
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         window.setResizable(false);
         window.pack();
         window.setVisible(true);
     }
+
+    /**
+     * @return The System.nanoTime() value at the time the game was launched.
+     */
+    public static long getStartTime() {
+        return START_TIME;
+    }
+
+    /**
+     * Note that the first frame has been presented. Only the first call counts.
+     */
+    public static void markFirstFrame() {
+        if (firstFrameTime == 0) {
+            firstFrameTime = System.nanoTime() - START_TIME;
+        }
+    }
+
+    /**
+     * Note that loading is done and the first state takes input. Only the first call counts.
+     */
+    public static void markInteractive() {
+        if (interactiveTime == 0) {
+            interactiveTime = System.nanoTime() - START_TIME;
+        }
+    }
+
+    /**
+     * @return The time from launch to the first presented frame in nanoseconds, or 0 if none was presented yet.
+     */
+    public static long getFirstFrameTime() {
+        return firstFrameTime;
+    }
+
+    /**
+     * @return The time from launch until the game took input in nanoseconds, or 0 if it is still loading.
+     */
+    public static long getInteractiveTime() {
+        return interactiveTime;
+    }
 }
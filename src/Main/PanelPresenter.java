@@ -0,0 +1,39 @@
+package Main;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * The original presentation path. Grabs the panel's Graphics object every frame and scales the frame into it.
+ */
+public class PanelPresenter implements FramePresenter {
+
+    private final JPanel panel;
+
+    public PanelPresenter(JPanel panel) {
+        this.panel = panel;
+    }
+
+    @Override
+    public void present(BufferedImage frame) {
+        Graphics2D g2 = (Graphics2D) panel.getGraphics();
+        if (g2 == null) {
+            /* Not displayable yet */
+            return;
+        }
+
+        g2.drawImage(frame, 0, 0, GamePanel.WIDTH * GamePanel.SCALE, GamePanel.HEIGHT * GamePanel.SCALE, null);
+        g2.dispose();
+    }
+
+    @Override
+    public GraphicsConfiguration getGraphicsConfiguration() {
+        return panel.getGraphicsConfiguration();
+    }
+
+    @Override
+    public String getDescription() {
+        return "panel (getGraphics)";
+    }
+}
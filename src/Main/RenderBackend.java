@@ -0,0 +1,31 @@
+package Main;
+
+/**
+ * The available ways of getting frames onto the screen.
+ */
+public enum RenderBackend {
+    /* Passive rendering into the Swing JPanel via getGraphics(). Always works, but isn't accelerated */
+    PANEL("panel"),
+    /* Active rendering into a Canvas through a page-flipping (or blitting) BufferStrategy */
+    CANVAS("canvas");
+
+    private final String name;
+
+    RenderBackend(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public static RenderBackend fromName(String name) {
+        for (RenderBackend backend : RenderBackend.values()) {
+            if (backend.name.equalsIgnoreCase(name)) {
+                return backend;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown render backend: " + name);
+    }
+}
@@ -0,0 +1,152 @@
+package Main;
+
+import Assets.CompatibleImages;
+import Assets.SpriteCache;
+import GameState.GameStateManager;
+import Profiling.FrameProfiler;
+import Profiling.Section;
+import Profiling.Events.RenderEvent;
+import Rendering.FrameSnapshot;
+import Rendering.TripleBuffer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * The render thread. Picks up the latest frame snapshot published by the game thread, draws it into the backbuffer
+ * image and hands that to the frame presenter, at its own rate. It never reads live game objects, so rendering
+ * overlaps with the next simulation tick instead of adding to it.
+ */
+public class Renderer implements Runnable {
+
+    private final GameStateManager gsm;
+    private final TripleBuffer<FrameSnapshot> snapshots;
+    private final FramePresenter presenter;
+    private final FramePacer pacer;
+
+    private volatile boolean running;
+
+    /* Image, in the format of the display it is presented on */
+    private BufferedImage image;
+    private Graphics2D g;
+    private GraphicsConfiguration configuration;
+
+    /* The input timestamp whose input-to-present latency has already been recorded */
+    private long reportedInputTimestamp;
+
+    public Renderer(GameStateManager gsm, TripleBuffer<FrameSnapshot> snapshots, FramePresenter presenter, int renderRate) {
+        this.gsm = gsm;
+        this.snapshots = snapshots;
+        this.presenter = presenter;
+        this.pacer = new FramePacer(renderRate);
+
+        /* Present times are profiled as a section, the overlay adds the presentation path and the pacing */
+        gsm.getProfilerOverlay().setRenderer(presenter, pacer.getStats());
+
+        createBackbuffer();
+    }
+
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this, "Renderer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        pacer.start();
+
+        while (running) {
+            FrameSnapshot snapshot = snapshots.getReadBuffer();
+
+            if (snapshot != null) {
+                checkDisplay();
+
+                RenderEvent event = RenderEvent.isRecorded() ? new RenderEvent() : null;
+                if (event != null) {
+                    event.begin();
+                }
+                FrameProfiler.begin(Section.FRAME);
+
+                /* Interpolate from the tick before the snapshot towards the snapshot itself */
+                double interpolation = (double) (System.nanoTime() - snapshot.getPublishTime()) / GamePanel.TICK_NANOS;
+                interpolation = Math.max(0, Math.min(1, interpolation));
+
+                gsm.draw(g, snapshot, interpolation);
+                drawToScreen();
+                recordInputLatency(snapshot, System.nanoTime());
+                FrameProfiler.end(Section.FRAME);
+
+                if (event != null) {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.tick = snapshot.getTick();
+                        event.state = snapshot.getState().name();
+                        event.interpolation = interpolation;
+                        event.sprites = snapshot.getSpriteCount();
+                        event.tileConfiguration = snapshot.getTileConfiguration();
+                        event.scrollSpeed = snapshot.getScrollSpeed();
+                        event.commit();
+                    }
+                }
+            }
+
+            pacer.waitForNextFrame();
+        }
+    }
+
+    public FrameStats getFrameStats() {
+        return pacer.getStats();
+    }
+
+    /**
+     * Prepare the images for a new display if the window has been moved to one, or the display mode has changed. Sprite
+     * sheets are converted right away; if the pixel format changed, the tile map's prerendered chunk images are
+     * dropped on their next lookup and rendered again, see ChunkImageCache.
+     */
+    private void checkDisplay() {
+        GraphicsConfiguration current = presenter.getGraphicsConfiguration();
+        if (current == null || current == configuration) {
+            return;
+        }
+
+        configuration = current;
+        SpriteCache.prepare(current);
+        createBackbuffer();
+    }
+
+    private void createBackbuffer() {
+        if (g != null) {
+            g.dispose();
+        }
+
+        image = CompatibleImages.create(GamePanel.WIDTH, GamePanel.HEIGHT, Transparency.OPAQUE);
+        g = image.createGraphics();
+    }
+
+    private void drawToScreen() {
+        long start = System.nanoTime();
+        presenter.present(image);
+        long end = System.nanoTime();
+
+        Main.markFirstFrame();
+        FrameProfiler.record(Section.PRESENT, end - start);
+    }
+
+    /**
+     * Record how long it took from the latest key press to the first frame showing its effect on screen.
+     */
+    private void recordInputLatency(FrameSnapshot snapshot, long presented) {
+        long inputTimestamp = snapshot.getInputTimestamp();
+
+        if (inputTimestamp != 0 && inputTimestamp != reportedInputTimestamp) {
+            FrameProfiler.record(Section.INPUT_TO_PRESENT, presented - inputTimestamp);
+            reportedInputTimestamp = inputTimestamp;
+        }
+    }
+}
@@ -22,6 +22,20 @@ public class WeatherData {
         getDataFromTestFile("Resources/TestData/PlaceholderAPIResponse.txt");
     }
 
+    /**
+     * @param json A weather API response, e.g. one stored with a replay.
+     */
+    public WeatherData(String json) {
+        this.WeatherDataJSON = new JSONObject(json);
+    }
+
+    /**
+     * @return The weather API response this weather data was read from.
+     */
+    public String toJson() {
+        return this.WeatherDataJSON.toString();
+    }
+
     private void getApiData() {
         try {
             URL APIURL = buildAPICall();
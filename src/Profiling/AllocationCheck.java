@@ -0,0 +1,143 @@
+package Profiling;
+
+import GameState.GameStateManager;
+import GameState.PlayState;
+import GameState.StateType;
+import Main.GamePanel;
+import Main.HeadlessRunner;
+import Main.Main;
+
+import java.awt.event.KeyEvent;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Checks that ticks in a running level, drawing included, allocate no memory on the game thread, so the garbage
+ * collector has nothing to collect during play and cannot drop frames:
+ *
+ *     java Profiling.AllocationCheck [--replay=<file>] [--ticks=<number>] [--seed=<number>] [--hazard-pool=<number>]
+ *
+ * Takes the same options as the game, and is the same as running it with --check-allocations. Exits with status 1 if
+ * the check fails, so it can gate a build.
+ *
+ * Ticks without input would leave jumping, parrying, rewinding and most of the damage the player takes unmeasured, so
+ * the runs are driven by input: by the given replay, or otherwise by a fixed script pressing each of the keys in
+ * SCRIPT_KEYS at its own interval. Plays WARMUP_TICKS ticks first, then measures the configured number of ticks with
+ * ThreadMXBean.getThreadAllocatedBytes(). Every measured tick has to allocate nothing; the check fails on the first byte.
+ * Only these ticks are not measured:
+ *
+ *  - ticks that start or end a run, and those spent in menus;
+ *  - ticks that built a map chunk on the game thread because the MapBuilder had none ready, which creates the chunk.
+ */
+public class AllocationCheck {
+
+    /* Ticks played before allocations are measured, so every buffer has grown and the JIT is done with the hot path.
+     * Until then, code running for the first time and methods being deoptimized and compiled again allocate a few
+     * hundred bytes every now and then, for a few minutes of play. Headless, this takes a couple of seconds */
+    private static final long WARMUP_TICKS = GamePanel.FPS * 60 * 20;
+    /* Allocating ticks listed when the check fails */
+    private static final int REPORTED_TICKS = 10;
+
+    /* Keys pressed by the input script, and the interval in ticks each one is pressed at. The intervals share no
+     * factor, so the keys meet in every combination over time */
+    private static final int[] SCRIPT_KEYS = {KeyEvent.VK_A, KeyEvent.VK_S, KeyEvent.VK_R};
+    private static final int[] SCRIPT_INTERVALS = {37, 53, 901};
+
+    public static void main(String[] args) {
+        String[] options = Arrays.copyOf(args, args.length + 1);
+        options[args.length] = "--check-allocations";
+        Main.main(options);
+    }
+
+    /**
+     * Run the check.
+     * @param runner The runner to play the ticks with.
+     * @return True if none of the measured ticks allocated, and with scripted input, some of them had a key pressed.
+     */
+    public static boolean run(HeadlessRunner runner) {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            System.out.println("Allocation check: this JVM cannot measure allocated memory per thread");
+            return false;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        GameStateManager gsm = runner.getGsm();
+        boolean scripted = !runner.isReplaying();
+        System.out.println("Allocation check: " + runner.getTicks() + " ticks after " + WARMUP_TICKS + " warm-up ticks, seed "
+                + runner.getSeed() + (scripted ? ", scripted input" : ", replaying") + (runner.isRendering() ? ", rendering offscreen" : ""));
+
+        if (gsm.getCurrentState() != StateType.PLAY) {
+            gsm.setState(StateType.PLAY);
+        }
+        PlayState play = (PlayState) gsm.getState(StateType.PLAY);
+        long measured = 0;
+        long inputTicks = 0;
+        long chunkTicks = 0;
+        long allocatingTicks = 0;
+        long[] reportedTicks = new long[REPORTED_TICKS];
+        long[] reportedBytes = new long[REPORTED_TICKS];
+        /* Warm-up and measured ticks go through the same loop, so the loop itself is compiled during the warm-up too */
+        for (long tick = 0; tick < WARMUP_TICKS + runner.getTicks(); tick++) {
+            boolean playing = (gsm.getCurrentState() == StateType.PLAY) && !gsm.isTransitioning();
+            long stalls = play.getChunkStalls();
+
+            long before = allocations.getThreadAllocatedBytes(thread);
+            boolean input = scripted && pressScriptedKeys(gsm, tick);
+            runner.tick();
+            long bytes = allocations.getThreadAllocatedBytes(thread) - before;
+
+            if (tick < WARMUP_TICKS || !playing || gsm.getCurrentState() != StateType.PLAY) {
+                continue;
+            }
+            if (play.getChunkStalls() != stalls) {
+                chunkTicks++;
+                continue;
+            }
+            measured++;
+            if (input) {
+                inputTicks++;
+            }
+            if (bytes > 0) {
+                if (allocatingTicks < REPORTED_TICKS) {
+                    reportedTicks[(int) allocatingTicks] = tick - WARMUP_TICKS;
+                    reportedBytes[(int) allocatingTicks] = bytes;
+                }
+                allocatingTicks++;
+            }
+        }
+
+        boolean passed = (measured > 0) && (!scripted || inputTicks > 0) && (allocatingTicks == 0);
+        System.out.printf("Allocation check %s: %d of %d measured ticks allocated, %d ticks building a map chunk not measured%n",
+                passed ? "passed" : "failed", allocatingTicks, measured, chunkTicks);
+        for (int i = 0; i < Math.min(allocatingTicks, REPORTED_TICKS); i++) {
+            System.out.printf("Tick %d allocated %d bytes%n", reportedTicks[i], reportedBytes[i]);
+        }
+        if (scripted) {
+            System.out.printf("Keys were pressed in %d of the measured ticks%n", inputTicks);
+        }
+        return passed;
+    }
+
+    /**
+     * Press the keys the script has for a tick, if a run is being played.
+     * @return True if a key was pressed.
+     */
+    private static boolean pressScriptedKeys(GameStateManager gsm, long tick) {
+        if (gsm.getCurrentState() != StateType.PLAY || gsm.isTransitioning()) {
+            return false;
+        }
+
+        boolean pressed = false;
+        for (int i = 0; i < SCRIPT_KEYS.length; i++) {
+            if (tick % SCRIPT_INTERVALS[i] == 0) {
+                gsm.keyPressed(SCRIPT_KEYS[i]);
+                pressed = true;
+            }
+        }
+        return pressed;
+    }
+}
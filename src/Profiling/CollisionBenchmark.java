@@ -0,0 +1,177 @@
+package Profiling;
+
+import Entity.Hazards.Hazard;
+import Entity.Hazards.HazardGrid;
+import Entity.Hazards.Projectile;
+import GameState.SplitMix64;
+import Main.GamePanel;
+import Networking.WeatherData;
+import TileMap.TileMap;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+/**
+ * Measures how the hazard queries of a tick scale with the number of hazards, comparing a scan of the whole hazard
+ * list with the HazardGrid broadphase:
+ *
+ *     java Profiling.CollisionBenchmark [hazard counts...]
+ *
+ * For every count, that many projectiles are scattered over a stretch of map that grows with the count, so the
+ * density stays that of a busy level. Each tick asks which hazards touch the player and which are on screen. The grid
+ * is rebuilt every tick, as in the game, so its time per tick is reported both in total and split into the rebuild
+ * and the queries, which should not grow with the hazard count. The game itself only uses the grid for the screen, as
+ * the rebuild alone costs about as much as the scan. The hazards stand still, so the rebuild only reads
+ * their positions; rebuilding after the grid was cleared, which buckets every hazard again as when one has changed
+ * column, is reported separately. Both rebuilds grow with the hazard count like the scan does. Finding all touching
+ * pairs of hazards is measured separately, against the scan of every pair. Both sides count the hits they find, which
+ * have to agree.
+ */
+public class CollisionBenchmark {
+
+    private static final int[] DEFAULT_COUNTS = {10, 100, 1000, 10000};
+    /* Hazards per tile column */
+    private static final int DENSITY = 2;
+    private static final int ROUNDS = 5;
+    /* Rough number of hazard checks per measured round, to keep every count's rounds similarly long */
+    private static final long CHECKS_PER_ROUND = 20000000;
+    private static final long SEED = 1;
+
+    /* Hits found by the last measured run, to compare both sides and to keep the work from being optimized away */
+    private static long hits;
+
+    public static void main(String[] args) {
+        int[] counts = DEFAULT_COUNTS;
+        if (args.length > 0) {
+            counts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                counts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        TileMap tileMap = new TileMap(GamePanel.TILESIZE, new WeatherData());
+        BufferedImage[] frames = {new BufferedImage(Projectile.SIZE, Projectile.SIZE, BufferedImage.TYPE_INT_ARGB)};
+
+        System.out.printf("%8s %12s %12s %12s %12s %12s %14s %14s%n", "hazards", "scan us", "rebuild us",
+                "rebucket us", "queries us", "grid us", "pair scan us", "pair grid us");
+
+        for (int count: counts) {
+            /* The player and the camera sit in the middle of the hazards */
+            int columns = Math.max(count / DENSITY, GamePanel.WIDTH / GamePanel.TILESIZE);
+            double middle = columns * GamePanel.TILESIZE / 2.0;
+            Projectile player = new Projectile(tileMap, null, null, middle, GamePanel.TILESIZE * 4, 0, frames);
+            double cameraX = -(middle - GamePanel.WIDTH / 2.0);
+
+            SplitMix64 random = new SplitMix64(SEED);
+            ArrayList<Hazard> hazards = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                double x = random.nextDouble() * columns * GamePanel.TILESIZE;
+                double y = random.nextInt(GamePanel.HEIGHT / GamePanel.TILESIZE) * GamePanel.TILESIZE;
+                hazards.add(new Projectile(tileMap, null, null, x, y, 0, frames));
+            }
+            HazardGrid grid = new HazardGrid(GamePanel.TILESIZE);
+
+            long repeats = Math.max(1, CHECKS_PER_ROUND / count);
+            double scan = measure(() -> scanTick(hazards, player, cameraX), repeats);
+            long scanHits = hits;
+            double gridded = measure(() -> gridTick(grid, hazards, player, cameraX), repeats);
+            check(scanHits, "tick", count);
+            double rebuild = measure(() -> grid.rebuild(hazards), repeats);
+            double rebucket = measure(() -> {
+                grid.clear();
+                grid.rebuild(hazards);
+            }, repeats);
+            double queries = measure(() -> queryTick(grid, hazards, player, cameraX), repeats);
+
+            long pairRepeats = Math.max(1, CHECKS_PER_ROUND / ((long) count * count));
+            double pairScan = measure(() -> scanPairs(hazards), pairRepeats);
+            long pairScanHits = hits;
+            double pairGrid = measure(() -> gridPairs(grid, hazards), pairRepeats);
+            check(pairScanHits, "pair", count);
+
+            System.out.printf("%8d %12.2f %12.2f %12.2f %12.2f %12.2f %14.1f %14.1f%n", count, scan / 1000,
+                    rebuild / 1000, rebucket / 1000, queries / 1000, gridded / 1000, pairScan / 1000, pairGrid / 1000);
+        }
+
+        System.exit(0);
+    }
+
+    private static void scanTick(ArrayList<Hazard> hazards, Projectile player, double cameraX) {
+        long found = 0;
+        for (int i = 0; i < hazards.size(); i++) {
+            Hazard h = hazards.get(i);
+            if (h.intersects(player)) found++;
+            if (isOnScreen(h, cameraX)) found++;
+        }
+        hits = found;
+    }
+
+    private static void gridTick(HazardGrid grid, ArrayList<Hazard> hazards, Projectile player, double cameraX) {
+        grid.rebuild(hazards);
+        queryTick(grid, hazards, player, cameraX);
+    }
+
+    private static void queryTick(HazardGrid grid, ArrayList<Hazard> hazards, Projectile player, double cameraX) {
+        long found = 0;
+        int near = grid.queryNear(player);
+        for (int i = 0; i < near; i++) {
+            if (hazards.get(grid.getResult(i)).intersects(player)) found++;
+        }
+        int visible = grid.queryScreen(cameraX, GamePanel.WIDTH);
+        for (int i = 0; i < visible; i++) {
+            if (isOnScreen(hazards.get(grid.getResult(i)), cameraX)) found++;
+        }
+        hits = found;
+    }
+
+    private static void scanPairs(ArrayList<Hazard> hazards) {
+        long found = 0;
+        for (int i = 0; i < hazards.size(); i++) {
+            for (int j = i + 1; j < hazards.size(); j++) {
+                if (hazards.get(i).intersects(hazards.get(j))) found++;
+            }
+        }
+        hits = found;
+    }
+
+    private static void gridPairs(HazardGrid grid, ArrayList<Hazard> hazards) {
+        hits = 0;
+        grid.rebuild(hazards);
+        grid.forEachPair((first, second) -> {
+            if (hazards.get(first).intersects(hazards.get(second))) hits++;
+        });
+    }
+
+    /**
+     * Entity.notOnScreen() against a given camera position rather than the tile map's.
+     */
+    private static boolean isOnScreen(Hazard h, double cameraX) {
+        return (h.getX() + cameraX + h.getWidth() >= 0) && (h.getX() + cameraX - h.getWidth() <= GamePanel.WIDTH);
+    }
+
+    private static void check(long expectedHits, String query, int count) {
+        if (hits != expectedHits) {
+            throw new IllegalStateException("Grid found " + hits + " " + query + " hits with " + count
+                    + " hazards, the scan " + expectedHits);
+        }
+    }
+
+    /**
+     * @return The average time per run in the fastest of several rounds, in nanoseconds.
+     */
+    private static double measure(Runnable run, long repeats) {
+        for (long i = 0; i < repeats; i++) {
+            run.run();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (long i = 0; i < repeats; i++) {
+                run.run();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / repeats;
+    }
+}
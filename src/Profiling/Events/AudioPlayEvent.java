@@ -0,0 +1,33 @@
+package Profiling.Events;
+
+import jdk.jfr.*;
+
+/**
+ * An AudioPlayer starting playback.
+ */
+@Name("runranrun.AudioPlay")
+@Label("Audio Play")
+@Category({"run ran run", "Audio"})
+public class AudioPlayEvent extends Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Looped")
+    public boolean looped;
+
+    @Label("Skipped")
+    @Description("True if nothing was played because the game is muted or the clip could not be opened")
+    public boolean skipped;
+
+    /* Handle to the event type, to ask whether anything records it */
+    private static final EventType TYPE = EventType.getEventType(AudioPlayEvent.class);
+
+    /**
+     * @return True if a running recording has this event enabled. Checked before creating one for every sound, so
+     *         sound effects during play allocate nothing while no recording wants it.
+     */
+    public static boolean isRecorded() {
+        return TYPE.isEnabled();
+    }
+}
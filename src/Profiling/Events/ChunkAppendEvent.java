@@ -0,0 +1,41 @@
+package Profiling.Events;
+
+import jdk.jfr.*;
+
+/**
+ * The tile map taking one or more chunks off the map builder's queue and appending them.
+ */
+@Name("runranrun.ChunkAppend")
+@Label("Chunk Append")
+@Category({"run ran run", "Map"})
+public class ChunkAppendEvent extends Event {
+
+    @Label("Chunks")
+    public int chunks;
+
+    @Label("Tile Configuration")
+    @Description("The last configuration appended")
+    public String tileConfiguration;
+
+    @Label("Stalls")
+    @Description("Chunks the map builder had none ready for, replaced by filler or built on the game thread")
+    public int stalls;
+
+    @Label("Queued Chunks")
+    @Description("Prepared chunks left in the map builder's queue afterwards")
+    public int queuedChunks;
+
+    @Label("Scroll Speed")
+    public double scrollSpeed;
+
+    /* Handle to the event type, to ask whether anything records it */
+    private static final EventType TYPE = EventType.getEventType(ChunkAppendEvent.class);
+
+    /**
+     * @return True if a running recording has this event enabled. Checked before creating one, so extending the map
+     *         allocates nothing on the game thread while no recording wants it.
+     */
+    public static boolean isRecorded() {
+        return TYPE.isEnabled();
+    }
+}
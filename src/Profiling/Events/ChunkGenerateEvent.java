@@ -0,0 +1,37 @@
+package Profiling.Events;
+
+import jdk.jfr.*;
+
+/**
+ * The map builder generating and validating one chunk, including any attempts that were rejected.
+ */
+@Name("runranrun.ChunkGenerate")
+@Label("Chunk Generate")
+@Category({"run ran run", "Map"})
+public class ChunkGenerateEvent extends Event {
+
+    @Label("Chunk")
+    public String chunk;
+
+    @Label("Columns")
+    public int columns;
+
+    @Label("Fallback")
+    @Description("No valid chunk was generated within the time budget, so a hand-made one was used")
+    public boolean fallback;
+
+    @Label("Scroll Speed")
+    @Description("The scroll speed the chunk was validated for")
+    public double scrollSpeed;
+
+    /* Handle to the event type, to ask whether anything records it */
+    private static final EventType TYPE = EventType.getEventType(ChunkGenerateEvent.class);
+
+    /**
+     * @return True if a running recording has this event enabled. Checked before creating one for every chunk the
+     *         map builder prepares, which may happen on the game thread, see MapBuilder.buildNow().
+     */
+    public static boolean isRecorded() {
+        return TYPE.isEnabled();
+    }
+}
@@ -0,0 +1,40 @@
+package Profiling.Events;
+
+import jdk.jfr.*;
+
+/**
+ * A single simulation tick, i.e. one call to GameStateManager.update.
+ */
+@Name("runranrun.GameTick")
+@Label("Game Tick")
+@Category({"run ran run", "Game Loop"})
+@StackTrace(false)
+public class GameTickEvent extends Event {
+
+    @Label("Tick")
+    public long tick;
+
+    @Label("State")
+    public String state;
+
+    @Label("Transitioning")
+    public boolean transitioning;
+
+    @Label("Tile Configuration")
+    @Description("The map chunk the player is currently in")
+    public String tileConfiguration;
+
+    @Label("Scroll Speed")
+    public double scrollSpeed;
+
+    /* Handle to the event type, to ask whether anything records it */
+    private static final EventType TYPE = EventType.getEventType(GameTickEvent.class);
+
+    /**
+     * @return True if a running recording has this event enabled. Checked before creating one for every tick, so
+     *         nothing is allocated while no recording wants it.
+     */
+    public static boolean isRecorded() {
+        return TYPE.isEnabled();
+    }
+}
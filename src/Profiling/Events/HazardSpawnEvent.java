@@ -0,0 +1,41 @@
+package Profiling.Events;
+
+import jdk.jfr.*;
+
+/**
+ * A hazard being created and added to the level.
+ */
+@Name("runranrun.HazardSpawn")
+@Label("Hazard Spawn")
+@Category({"run ran run", "Hazards"})
+public class HazardSpawnEvent extends Event {
+
+    @Label("Hazard")
+    public String hazard;
+
+    @Label("X")
+    public double x;
+
+    @Label("Y")
+    public double y;
+
+    @Label("Speed")
+    public double speed;
+
+    @Label("Tile Configuration")
+    public String tileConfiguration;
+
+    @Label("Scroll Speed")
+    public double scrollSpeed;
+
+    /* Handle to the event type, to ask whether anything records it */
+    private static final EventType TYPE = EventType.getEventType(HazardSpawnEvent.class);
+
+    /**
+     * @return True if a running recording has this event enabled. Checked before creating one for every spawn, so
+     *         nothing is allocated while no recording wants it.
+     */
+    public static boolean isRecorded() {
+        return TYPE.isEnabled();
+    }
+}
@@ -0,0 +1,43 @@
+package Profiling.Events;
+
+import jdk.jfr.*;
+
+/**
+ * A single render pass on the render thread, from drawing a snapshot until it has been presented.
+ */
+@Name("runranrun.Render")
+@Label("Render")
+@Category({"run ran run", "Game Loop"})
+@StackTrace(false)
+public class RenderEvent extends Event {
+
+    @Label("Tick")
+    @Description("The tick the rendered snapshot was captured after")
+    public long tick;
+
+    @Label("State")
+    public String state;
+
+    @Label("Interpolation")
+    public double interpolation;
+
+    @Label("Sprites")
+    public int sprites;
+
+    @Label("Tile Configuration")
+    public String tileConfiguration;
+
+    @Label("Scroll Speed")
+    public double scrollSpeed;
+
+    /* Handle to the event type, to ask whether anything records it */
+    private static final EventType TYPE = EventType.getEventType(RenderEvent.class);
+
+    /**
+     * @return True if a running recording has this event enabled. Checked before creating one for every render pass, so
+     *         nothing is allocated while no recording wants it.
+     */
+    public static boolean isRecorded() {
+        return TYPE.isEnabled();
+    }
+}
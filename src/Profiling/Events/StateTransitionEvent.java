@@ -0,0 +1,35 @@
+package Profiling.Events;
+
+import jdk.jfr.*;
+
+/**
+ * A GameStateManager.setState call, covering the old state's reload and the new state's startWorkers.
+ */
+@Name("runranrun.StateTransition")
+@Label("State Transition")
+@Category({"run ran run", "Game Loop"})
+public class StateTransitionEvent extends Event {
+
+    @Label("From")
+    public String from;
+
+    @Label("To")
+    public String to;
+
+    @Label("Tile Configuration")
+    public String tileConfiguration;
+
+    @Label("Scroll Speed")
+    public double scrollSpeed;
+
+    /* Handle to the event type, to ask whether anything records it */
+    private static final EventType TYPE = EventType.getEventType(StateTransitionEvent.class);
+
+    /**
+     * @return True if a running recording has this event enabled. Checked before creating one, so restarting a run
+     *         allocates no event while no recording wants it.
+     */
+    public static boolean isRecorded() {
+        return TYPE.isEnabled();
+    }
+}
@@ -0,0 +1,42 @@
+package Profiling;
+
+/**
+ * Measures how long each section of a frame takes. Sections are bracketed with begin() and end() calls, which only
+ * read the clock and write into preallocated arrays, so measuring never allocates. Each section has to be begun and
+ * ended on the same thread, and must not be nested with itself.
+ */
+public class FrameProfiler {
+
+    private static final Section[] SECTIONS = Section.values();
+
+    private static final long[] starts = new long[SECTIONS.length];
+    private static final TimingRing[] rings = new TimingRing[SECTIONS.length];
+
+    static {
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = new TimingRing();
+        }
+    }
+
+    private FrameProfiler() {
+    }
+
+    public static void begin(Section section) {
+        starts[section.ordinal()] = System.nanoTime();
+    }
+
+    public static void end(Section section) {
+        rings[section.ordinal()].add(System.nanoTime() - starts[section.ordinal()]);
+    }
+
+    /**
+     * Record a sample that was measured elsewhere.
+     */
+    public static void record(Section section, long nanos) {
+        rings[section.ordinal()].add(nanos);
+    }
+
+    public static TimingRing getRing(Section section) {
+        return rings[section.ordinal()];
+    }
+}
@@ -0,0 +1,88 @@
+package Profiling;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Usage counters of an object pool, shown by the ProfilerOverlay and at the end of headless runs. Every pool registers
+ * its counters once, when it is created. Counters are written by the thread using the pool only; readers on other
+ * threads may see slightly stale values, which is fine for statistics.
+ */
+public class PoolStats {
+
+    private static final List<PoolStats> registered = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final int capacity;
+
+    /* Objects handed out from the pool, and the ones that had to be created because it was empty */
+    private volatile long hits;
+    private volatile long misses;
+    /* Objects handed back while the pool was full, and left to the garbage collector */
+    private volatile long discards;
+    private volatile int free;
+
+    private PoolStats(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Create the counters of a new pool.
+     * @param name The name the pool is shown with.
+     * @param capacity The most objects the pool keeps.
+     */
+    public static PoolStats register(String name, int capacity) {
+        PoolStats stats = new PoolStats(name, capacity);
+        registered.add(stats);
+        return stats;
+    }
+
+    /**
+     * @return The counters of every pool created so far, in the order they were created.
+     */
+    public static List<PoolStats> getRegistered() {
+        return registered;
+    }
+
+    public void hit(int free) {
+        this.hits++;
+        this.free = free;
+    }
+
+    public void miss() {
+        this.misses++;
+    }
+
+    public void release(int free) {
+        this.free = free;
+    }
+
+    public void discard() {
+        this.discards++;
+    }
+
+    public String getName() { return name; }
+    public int getCapacity() { return capacity; }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getDiscards() { return discards; }
+    public int getFree() { return free; }
+
+    /**
+     * @return The share of requests served from the pool in percent, 0 if there were none.
+     */
+    public double getHitRate() {
+        long hits = this.hits;
+        long requests = hits + this.misses;
+        return (requests == 0) ? 0 : 100.0 * hits / requests;
+    }
+
+    /**
+     * @return A one line summary of the counters.
+     */
+    public String describe() {
+        return String.format("Pool of %s: %d hits, %d misses (%.1f%% hit rate), %d discarded, %d of %d free",
+                name, hits, misses, getHitRate(), discards, free, capacity);
+    }
+}
@@ -0,0 +1,146 @@
+package Profiling;
+
+import Main.FramePresenter;
+import Main.FrameStats;
+import Main.GamePanel;
+import Main.Main;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Debug overlay showing p50/p95/p99/max for every profiled section, the hit rate of every object pool, the startup
+ * timings, the presentation path and render pacing, and a graph of recent frame times. The statistics are only
+ * recomputed a few times per second, in between the overlay redraws cached text.
+ */
+public class ProfilerOverlay {
+
+    private static final Section[] SECTIONS = Section.values();
+    private static final double[] PERCENTILES = { 50, 95, 99, 100 };
+    private static final int REFRESH_INTERVAL = 15;
+
+    /* Layout */
+    private static final int LINE_HEIGHT = 9;
+    private static final int GRAPH_HEIGHT = 40;
+    private static final int GRAPH_WIDTH = 180;
+    /* Vertical graph scale, in nanoseconds per pixel. The full graph height is two 60 FPS frames */
+    private static final long GRAPH_SCALE = 2 * GamePanel.TICK_NANOS / GRAPH_HEIGHT;
+
+    private static final Color BACKGROUND = new Color(0, 0, 0, 160);
+    private static final Color BUDGET = new Color(255, 80, 80);
+
+    private final Font font;
+
+    /* Reused work arrays */
+    private final long[] scratch;
+    private final long[] result;
+    private String[] lines;
+    private int framesUntilRefresh;
+
+    /* The render thread's presenter and pacing statistics, null when nothing is presented on screen */
+    private FramePresenter presenter;
+    private FrameStats pacing;
+
+    public ProfilerOverlay() {
+        this.font = new Font("Monospaced", Font.PLAIN, 9);
+        this.scratch = new long[TimingRing.CAPACITY];
+        this.result = new long[PERCENTILES.length];
+        this.lines = new String[SECTIONS.length + 1];
+        this.framesUntilRefresh = 0;
+    }
+
+    /**
+     * Show how frames reach the screen. Set by the render thread before it starts drawing.
+     */
+    public void setRenderer(FramePresenter presenter, FrameStats pacing) {
+        this.presenter = presenter;
+        this.pacing = pacing;
+    }
+
+    public void draw(Graphics2D g) {
+        if (framesUntilRefresh-- <= 0) {
+            refresh();
+            framesUntilRefresh = REFRESH_INTERVAL;
+        }
+
+        int x = 4;
+        int y = 4;
+        int height = lines.length * LINE_HEIGHT + GRAPH_HEIGHT + 8;
+
+        g.setColor(BACKGROUND);
+        g.fillRect(x, y, GamePanel.WIDTH / 2, height);
+
+        g.setFont(font);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], x + 4, y + (i + 1) * LINE_HEIGHT);
+        }
+
+        drawGraph(g, x + 4, y + lines.length * LINE_HEIGHT + 4);
+    }
+
+    /**
+     * Draw the most recent frame times as vertical bars, newest on the right, with a line marking one tick.
+     */
+    private void drawGraph(Graphics2D g, int x, int y) {
+        TimingRing frames = FrameProfiler.getRing(Section.FRAME);
+        int bars = Math.min(frames.size(), GRAPH_WIDTH);
+
+        g.setColor(Color.GREEN);
+        for (int i = 0; i < bars; i++) {
+            int barHeight = (int) Math.min(GRAPH_HEIGHT, frames.get(i) / GRAPH_SCALE);
+            g.drawLine(x + GRAPH_WIDTH - i, y + GRAPH_HEIGHT, x + GRAPH_WIDTH - i, y + GRAPH_HEIGHT - barHeight);
+        }
+
+        int budget = y + GRAPH_HEIGHT - (int) (GamePanel.TICK_NANOS / GRAPH_SCALE);
+        g.setColor(BUDGET);
+        g.drawLine(x, budget, x + GRAPH_WIDTH, budget);
+    }
+
+    private void refresh() {
+        List<PoolStats> pools = PoolStats.getRegistered();
+        int poolCount = pools.size();
+        int lineCount = SECTIONS.length + 1 + poolCount + ((presenter != null) ? 3 : 1);
+        if (lines.length != lineCount) {
+            /* Pools are created as the game states load */
+            lines = new String[lineCount];
+        }
+
+        lines[0] = String.format("%-13s %6s %6s %6s %6s", "ms", "p50", "p95", "p99", "max");
+
+        for (int i = 0; i < SECTIONS.length; i++) {
+            FrameProfiler.getRing(SECTIONS[i]).percentiles(scratch, PERCENTILES, result);
+            lines[i + 1] = String.format("%-13s %6.2f %6.2f %6.2f %6.2f",
+                    SECTIONS[i].getLabel(),
+                    result[0] / 1000000.0,
+                    result[1] / 1000000.0,
+                    result[2] / 1000000.0,
+                    result[3] / 1000000.0);
+        }
+
+        for (int i = 0; i < poolCount; i++) {
+            PoolStats pool = pools.get(i);
+            lines[SECTIONS.length + 1 + i] = String.format("%-13s %5.1f%% hit %6d miss %3d/%d free",
+                    pool.getName(),
+                    pool.getHitRate(),
+                    pool.getMisses(),
+                    pool.getFree(),
+                    pool.getCapacity());
+        }
+
+        int line = SECTIONS.length + 1 + poolCount;
+        lines[line++] = String.format("%-13s %6d first frame %6d interactive",
+                "startup ms",
+                Main.getFirstFrameTime() / 1000000,
+                Main.getInteractiveTime() / 1000000);
+
+        if (presenter != null) {
+            lines[line++] = String.format("%-13s %s", "present", presenter.getDescription());
+            lines[line] = String.format("%-13s %6.2f avg %6.2f jitter %6d missed",
+                    "pacing ms",
+                    pacing.getMeanInterval() / 1000000.0,
+                    pacing.getJitter() / 1000000.0,
+                    pacing.getMissedDeadlines());
+        }
+    }
+}
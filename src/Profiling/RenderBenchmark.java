@@ -0,0 +1,142 @@
+package Profiling;
+
+import Assets.CompatibleImages;
+import GameState.SplitMix64;
+import GameState.StateType;
+import Main.GamePanel;
+import Networking.WeatherData;
+import Rendering.FrameSnapshot;
+import TileMap.Background;
+import TileMap.TileMap;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Measures how fast the tile map and the background are drawn into a backbuffer, to compare image formats:
+ *
+ *     java Profiling.RenderBenchmark [background] [tileset]
+ *     java -Drunranrun.compatibleImages=false Profiling.RenderBenchmark [background] [tileset]
+ *
+ * The second form draws the images the way they are decoded, which is how they were drawn before images were
+ * prepared for the display. The tile map is timed both tile by tile and with prerendered chunk images.
+ */
+public class RenderBenchmark {
+
+    private static final int WARMUP_DRAWS = 2000;
+    private static final int MEASURED_DRAWS = 10000;
+    private static final int ROUNDS = 5;
+
+    /* Ticks to scroll the map before measuring, so the window is filled with built chunks */
+    private static final int SCROLL_TICKS = 600;
+    private static final double SCROLL_SPEED = 4;
+    /* The map is built deterministically from this seed, so every benchmark run draws the same tiles */
+    private static final long MAP_SEED = 1;
+
+    public static void main(String[] args) throws InterruptedException {
+        String backgroundPath = args.length > 0 ? args[0] : "Resources/Backgrounds/rain-bg.gif";
+        String tilesetPath = args.length > 1 ? args[1] : "Resources/Tilesets/tileset_rain.gif";
+
+        Background background = new Background(backgroundPath);
+        background.setVector(-0.05, 0);
+
+        TileMap tileMap = new TileMap(GamePanel.TILESIZE, new WeatherData());
+        tileMap.loadTiles(tilesetPath);
+        tileMap.startRun(new SplitMix64(MAP_SEED), true, null);
+        tileMap.setPosition(0, 0);
+        for (int i = 0; i < SCROLL_TICKS; i++) {
+            background.update();
+            tileMap.storePreviousPosition();
+            tileMap.setPosition(tileMap.getX() - SCROLL_SPEED, 0);
+            tileMap.update(SCROLL_SPEED);
+        }
+
+        /* Chunk images are rendered in the background, give them a moment */
+        FrameSnapshot chunked = new FrameSnapshot();
+        for (int attempt = 0; attempt < 50; attempt++) {
+            chunked.begin(0, StateType.PLAY, false, 0, false);
+            background.capture(chunked);
+            tileMap.capture(chunked);
+            if (chunked.getChunkCount() > 0 && isFullyChunked(chunked)) break;
+            Thread.sleep(20);
+        }
+
+        FrameSnapshot tiled = withoutChunks(chunked);
+
+        BufferedImage backbuffer = CompatibleImages.create(GamePanel.WIDTH, GamePanel.HEIGHT, Transparency.OPAQUE);
+        Graphics2D g = backbuffer.createGraphics();
+
+        System.out.println("Compatible images " + (CompatibleImages.isEnabled() ? "enabled" : "disabled")
+                + ", backbuffer " + describe(backbuffer));
+
+        report("Background.draw", measure(() -> background.draw(g, chunked)));
+        report("TileMap.draw, " + countTiles(tiled) + " tiles", measure(() -> tileMap.draw(g, tiled, 0.5)));
+        report("TileMap.draw, " + chunked.getChunkCount() + " chunk images", measure(() -> tileMap.draw(g, chunked, 0.5)));
+
+        g.dispose();
+        System.exit(0);
+    }
+
+    /**
+     * @return The average time per draw in the fastest of several rounds, in nanoseconds.
+     */
+    private static double measure(Runnable draw) {
+        for (int i = 0; i < WARMUP_DRAWS; i++) {
+            draw.run();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_DRAWS; i++) {
+                draw.run();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / MEASURED_DRAWS;
+    }
+
+    private static void report(String name, double nanosPerDraw) {
+        System.out.printf("%-32s %9.1f us/draw %9.0f draws/s%n", name, nanosPerDraw / 1000, 1000000000 / nanosPerDraw);
+    }
+
+    private static int countTiles(FrameSnapshot snapshot) {
+        int tiles = 0;
+        for (int col = 0; col < snapshot.getWindowColumns(); col++) {
+            for (int row = 0; row < snapshot.getWindowRows(); row++) {
+                if (snapshot.getTile(col, row) != 0) tiles++;
+            }
+        }
+        return tiles;
+    }
+
+    private static boolean isFullyChunked(FrameSnapshot snapshot) {
+        int covered = 0;
+        for (int i = 0; i < snapshot.getChunkCount(); i++) {
+            covered += snapshot.getChunkColumns(i);
+        }
+        return covered >= snapshot.getWindowColumns();
+    }
+
+    /**
+     * Copy a snapshot's camera, background and tile window, leaving out the chunk images, so the map is drawn tile by
+     * tile.
+     */
+    private static FrameSnapshot withoutChunks(FrameSnapshot source) {
+        FrameSnapshot snapshot = new FrameSnapshot();
+        snapshot.begin(0, StateType.PLAY, false, 0, false);
+        snapshot.setCamera(source.getCameraX(0), source.getCameraY(0), source.getCameraX(1), source.getCameraY(1));
+        snapshot.setBackgroundPosition(source.getBackgroundX(), source.getBackgroundY());
+        snapshot.setTileWindow(source.getFirstColumn(), source.getWindowColumns(), source.getWindowRows());
+        for (int col = 0; col < source.getWindowColumns(); col++) {
+            for (int row = 0; row < source.getWindowRows(); row++) {
+                snapshot.setTile(col, row, source.getTile(col, row));
+            }
+        }
+        return snapshot;
+    }
+
+    private static String describe(BufferedImage image) {
+        return image.getColorModel().getClass().getSimpleName() + ", " + image.getColorModel().getPixelSize() + " bpp";
+    }
+}
@@ -0,0 +1,34 @@
+package Profiling;
+
+/**
+ * The parts of a frame that are timed separately by the FrameProfiler. Update sections are measured on the game
+ * thread, draw sections on the render thread. The input sections are latencies: from a key event to the tick that
+ * applied it, and from the key event to the first presented frame that reflects it.
+ */
+public enum Section {
+    TICK("tick"),
+    BACKGROUND_UPDATE("bg update"),
+    PLAYER_UPDATE("player update"),
+    TILEMAP_UPDATE("map update"),
+    HAZARDS_UPDATE("hazard update"),
+    DRAW("draw"),
+    BACKGROUND_DRAW("bg draw"),
+    TILEMAP_DRAW("map draw"),
+    SPRITES_DRAW("sprite draw"),
+    HUD_DRAW("hud draw"),
+    TRANSITION_DRAW("transition"),
+    PRESENT("present"),
+    FRAME("frame"),
+    INPUT_TO_TICK("input>tick"),
+    INPUT_TO_PRESENT("input>present");
+
+    private final String label;
+
+    Section(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return this.label;
+    }
+}
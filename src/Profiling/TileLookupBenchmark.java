@@ -0,0 +1,183 @@
+package Profiling;
+
+import Entity.Player;
+import GameState.SplitMix64;
+import Main.GamePanel;
+import Networking.WeatherData;
+import TileMap.Tile;
+import TileMap.TileMap;
+
+/**
+ * Compares the two ways of asking whether map tiles are solid: resolving the tile with TileMap.getType(), as collision
+ * checks did before every map column kept a solidity bitmask, and reading that mask with TileMap.isSolid() and
+ * anySolid():
+ *
+ *     java Profiling.TileLookupBenchmark [tileset]
+ *
+ * The map is built and scrolled as in a run. Then a fixed set of random tiles around the screen, a few of them outside
+ * the map, is looked up one at a time, and player sized boxes are checked at their four corners the way
+ * Entity.calculateCorners() did, and as one rectangle with anySolid(). Both sides count the solid tiles or blocked
+ * boxes they find, which have to agree.
+ */
+public class TileLookupBenchmark {
+
+    private static final int SAMPLES = 4096;
+    private static final int ROUNDS = 5;
+    private static final int REPEATS = 2000;
+
+    /* Ticks to scroll the map before measuring, so the screen and the columns ahead of it are built */
+    private static final int SCROLL_TICKS = 600;
+    private static final double SCROLL_SPEED = 4;
+    private static final long SEED = 1;
+
+    /* Hits found by the last measured run, to compare both sides and to keep the work from being optimized away */
+    private static long hits;
+
+    public static void main(String[] args) {
+        String tilesetPath = args.length > 0 ? args[0] : "Resources/Tilesets/tileset_rain.gif";
+
+        TileMap tileMap = new TileMap(GamePanel.TILESIZE, new WeatherData());
+        tileMap.loadTiles(tilesetPath);
+        tileMap.startRun(new SplitMix64(SEED), true, null);
+        tileMap.setPosition(0, 0);
+        for (int i = 0; i < SCROLL_TICKS; i++) {
+            tileMap.setPosition(tileMap.getX() - SCROLL_SPEED, 0);
+            tileMap.update(SCROLL_SPEED);
+        }
+
+        /* Tiles and boxes on screen and a bit beyond, one row above and below the map included */
+        int rows = GamePanel.HEIGHT / GamePanel.TILESIZE;
+        int firstCol = (int) -tileMap.getX() / GamePanel.TILESIZE;
+        int screenCols = GamePanel.WIDTH / GamePanel.TILESIZE;
+        SplitMix64 random = new SplitMix64(SEED);
+        int[] sampleRows = new int[SAMPLES];
+        int[] sampleCols = new int[SAMPLES];
+        double[] boxX = new double[SAMPLES];
+        double[] boxY = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            sampleRows[i] = random.nextInt(rows + 2) - 1;
+            sampleCols[i] = firstCol + random.nextInt(screenCols + 10);
+            boxX[i] = (firstCol + random.nextDouble() * screenCols) * GamePanel.TILESIZE;
+            boxY[i] = random.nextDouble() * GamePanel.HEIGHT;
+        }
+
+        double getType = measure(() -> {
+            long found = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                if (tileMap.getType(sampleRows[i], sampleCols[i]) == Tile.type.BLOCKED) found++;
+            }
+            hits = found;
+        });
+        long getTypeHits = hits;
+        double isSolid = measure(() -> {
+            long found = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                if (tileMap.isSolid(sampleRows[i], sampleCols[i])) found++;
+            }
+            hits = found;
+        });
+        check(getTypeHits, "isSolid");
+
+        double cornerTypes = measure(() -> {
+            long found = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                if (cornersByType(tileMap, boxX[i], boxY[i])) found++;
+            }
+            hits = found;
+        });
+        long cornerHits = hits;
+        double cornerMasks = measure(() -> {
+            long found = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                if (cornersByMask(tileMap, boxX[i], boxY[i])) found++;
+            }
+            hits = found;
+        });
+        check(cornerHits, "isSolid corners");
+        double rectangle = measure(() -> {
+            long found = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                if (rectangle(tileMap, boxX[i], boxY[i])) found++;
+            }
+            hits = found;
+        });
+        check(cornerHits, "anySolid");
+
+        System.out.printf("%d tiles, %d of them solid; %d boxes, %d of them blocked%n", SAMPLES, getTypeHits, SAMPLES, cornerHits);
+        report("getType", getType, "lookup");
+        report("isSolid", isSolid, "lookup");
+        report("4 corners, getType", cornerTypes, "box");
+        report("4 corners, isSolid", cornerMasks, "box");
+        report("anySolid", rectangle, "box");
+
+        System.exit(0);
+    }
+
+    /**
+     * The check Entity.calculateCorners() made before the solidity masks: four tiles resolved to their type.
+     */
+    private static boolean cornersByType(TileMap tileMap, double x, double y) {
+        int left = (int) (x - Player.SIZE / 2) / GamePanel.TILESIZE;
+        int right = (int) (x + (Player.SIZE / 2) - 1) / GamePanel.TILESIZE;
+        int top = (int) (y - Player.SIZE / 2) / GamePanel.TILESIZE;
+        int bottom = (int) (y + (Player.SIZE / 2) - 1) / GamePanel.TILESIZE;
+
+        return tileMap.getType(top, left) == Tile.type.BLOCKED
+                | tileMap.getType(top, right) == Tile.type.BLOCKED
+                | tileMap.getType(bottom, left) == Tile.type.BLOCKED
+                | tileMap.getType(bottom, right) == Tile.type.BLOCKED;
+    }
+
+    private static boolean cornersByMask(TileMap tileMap, double x, double y) {
+        int left = (int) (x - Player.SIZE / 2) / GamePanel.TILESIZE;
+        int right = (int) (x + (Player.SIZE / 2) - 1) / GamePanel.TILESIZE;
+        int top = (int) (y - Player.SIZE / 2) / GamePanel.TILESIZE;
+        int bottom = (int) (y + (Player.SIZE / 2) - 1) / GamePanel.TILESIZE;
+
+        return tileMap.isSolid(top, left)
+                | tileMap.isSolid(top, right)
+                | tileMap.isSolid(bottom, left)
+                | tileMap.isSolid(bottom, right);
+    }
+
+    /**
+     * A player sized box covers at most two tiles either way, so its corners are all the tiles it covers.
+     */
+    private static boolean rectangle(TileMap tileMap, double x, double y) {
+        int left = (int) (x - Player.SIZE / 2) / GamePanel.TILESIZE;
+        int right = (int) (x + (Player.SIZE / 2) - 1) / GamePanel.TILESIZE;
+        int top = (int) (y - Player.SIZE / 2) / GamePanel.TILESIZE;
+        int bottom = (int) (y + (Player.SIZE / 2) - 1) / GamePanel.TILESIZE;
+
+        return tileMap.anySolid(top, left, bottom, right);
+    }
+
+    private static void check(long expectedHits, String query) {
+        if (hits != expectedHits) {
+            throw new IllegalStateException(query + " found " + hits + " hits, getType " + expectedHits);
+        }
+    }
+
+    /**
+     * @return The average time per sample in the fastest of several rounds, in nanoseconds.
+     */
+    private static double measure(Runnable run) {
+        for (int i = 0; i < REPEATS; i++) {
+            run.run();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < REPEATS; i++) {
+                run.run();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / REPEATS / SAMPLES;
+    }
+
+    private static void report(String name, double nanos, String unit) {
+        System.out.printf("%-20s %8.2f ns/%s%n", name, nanos, unit);
+    }
+}
@@ -0,0 +1,63 @@
+package Profiling;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring buffer of the most recent timing samples of a single section, in nanoseconds. Written by exactly
+ * one thread. Readers on other threads may see a sample that is being overwritten, which is fine for statistics.
+ */
+public class TimingRing {
+
+    public static final int CAPACITY = 256;
+    private static final int MASK = CAPACITY - 1;
+
+    private final long[] samples;
+    private volatile long count;
+
+    public TimingRing() {
+        this.samples = new long[CAPACITY];
+        this.count = 0;
+    }
+
+    public void add(long sample) {
+        samples[(int) (count & MASK)] = sample;
+        count++;
+    }
+
+    /**
+     * @return The number of valid samples in the ring, at most CAPACITY.
+     */
+    public int size() {
+        return (int) Math.min(count, CAPACITY);
+    }
+
+    /**
+     * Get a sample by age.
+     * @param age 0 for the most recent sample, size() - 1 for the oldest one.
+     */
+    public long get(int age) {
+        return samples[(int) ((count - 1 - age) & MASK)];
+    }
+
+    /**
+     * Compute percentiles over the samples currently in the ring, without allocating.
+     * @param scratch A work array of at least CAPACITY elements.
+     * @param percentiles The percentiles to compute, between 0 and 100.
+     * @param result Receives one value per requested percentile. 100 yields the maximum.
+     */
+    public void percentiles(long[] scratch, double[] percentiles, long[] result) {
+        int size = size();
+        if (size == 0) {
+            Arrays.fill(result, 0);
+            return;
+        }
+
+        System.arraycopy(samples, 0, scratch, 0, size);
+        Arrays.sort(scratch, 0, size);
+
+        for (int i = 0; i < percentiles.length; i++) {
+            int index = (int) Math.ceil(percentiles[i] / 100.0 * size) - 1;
+            result[i] = scratch[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
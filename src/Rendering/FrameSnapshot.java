@@ -0,0 +1,259 @@
+package Rendering;
+
+import GameState.StateType;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Everything the renderer needs to draw one frame, captured by the simulation thread at the end of a tick. Snapshots
+ * are preallocated and recycled through a TripleBuffer: the simulation thread fills one through the capture methods
+ * and publishes it, after which it is never modified until the render thread has moved on to a newer one. The
+ * renderer only ever reads from snapshots and never touches live game objects. The sprite and chunk arrays grow when
+ * a frame needs more room than any frame before it, so a snapshot stops allocating once the busiest frame was seen.
+ */
+public class FrameSnapshot {
+
+    private static final int INITIAL_SPRITES = 128;
+    private static final int INITIAL_CHUNKS = 8;
+
+    /* Frame information */
+    private long tick;
+    private long publishTime;
+    private StateType state;
+    private boolean transitioning;
+    private int transitionCounter;
+    private boolean profilerVisible;
+
+    /* Timestamp of the latest key press applied before this frame was captured */
+    private long inputTimestamp;
+
+    /* Diagnostic context */
+    private String tileConfiguration;
+    private double scrollSpeed;
+
+    /* Camera position during the previous and the current tick */
+    private double previousCameraX, previousCameraY;
+    private double cameraX, cameraY;
+
+    /* Background position */
+    private double backgroundX, backgroundY;
+
+    /* Visible tile window, stored column by column */
+    private int firstColumn;
+    private int windowColumns;
+    private int windowRows;
+    private int[] tiles;
+
+    /* Prerendered map chunks overlapping the tile window */
+    private int chunkCount;
+    private BufferedImage[] chunkImages;
+    private int[] chunkFirstColumn;
+    private int[] chunkColumns;
+
+    /* Sprites, drawn in the order they were added */
+    private int spriteCount;
+    private BufferedImage[] spriteImages;
+    private double[] spritePreviousX, spritePreviousY;
+    private double[] spriteX, spriteY;
+    private float[] spriteAlpha;
+
+    /* HUD values */
+    private int health, maxHealth;
+    private int healCounter, healThreshold;
+
+    /* Loading screen values */
+    private double loadingProgress;
+
+    /* Menu values */
+    private int menuChoice;
+    private boolean muted;
+    private double previousScore, bestScore;
+
+    public FrameSnapshot() {
+        this.tiles = new int[0];
+
+        this.chunkImages = new BufferedImage[INITIAL_CHUNKS];
+        this.chunkFirstColumn = new int[INITIAL_CHUNKS];
+        this.chunkColumns = new int[INITIAL_CHUNKS];
+
+        this.spriteImages = new BufferedImage[INITIAL_SPRITES];
+        this.spritePreviousX = new double[INITIAL_SPRITES];
+        this.spritePreviousY = new double[INITIAL_SPRITES];
+        this.spriteX = new double[INITIAL_SPRITES];
+        this.spriteY = new double[INITIAL_SPRITES];
+        this.spriteAlpha = new float[INITIAL_SPRITES];
+    }
+
+    /**
+     * Start capturing a new frame, dropping everything captured into this snapshot before.
+     */
+    public void begin(long tick, StateType state, boolean transitioning, int transitionCounter, boolean profilerVisible) {
+        this.tick = tick;
+        this.state = state;
+        this.transitioning = transitioning;
+        this.transitionCounter = transitionCounter;
+        this.profilerVisible = profilerVisible;
+
+        this.windowColumns = 0;
+        this.windowRows = 0;
+        this.chunkCount = 0;
+        this.spriteCount = 0;
+    }
+
+    /**
+     * Finish capturing. Called right before the snapshot is published.
+     */
+    public void end() {
+        this.publishTime = System.nanoTime();
+    }
+
+    public void setContext(String tileConfiguration, double scrollSpeed) {
+        this.tileConfiguration = tileConfiguration;
+        this.scrollSpeed = scrollSpeed;
+    }
+
+    public void setInputTimestamp(long inputTimestamp) {
+        this.inputTimestamp = inputTimestamp;
+    }
+
+    public void setCamera(double previousX, double previousY, double x, double y) {
+        this.previousCameraX = previousX;
+        this.previousCameraY = previousY;
+        this.cameraX = x;
+        this.cameraY = y;
+    }
+
+    public void setBackgroundPosition(double x, double y) {
+        this.backgroundX = x;
+        this.backgroundY = y;
+    }
+
+    /**
+     * Prepare the tile window. The tile array only grows, so this does not allocate once the window size is stable.
+     * @param firstColumn The map column of the window's leftmost column.
+     * @param columns The window width in tiles.
+     * @param rows The window height in tiles, starting at row 0.
+     */
+    public void setTileWindow(int firstColumn, int columns, int rows) {
+        if (tiles.length < columns * rows) {
+            tiles = new int[columns * rows];
+        }
+
+        this.firstColumn = firstColumn;
+        this.windowColumns = columns;
+        this.windowRows = rows;
+    }
+
+    public void setTile(int windowColumn, int row, int tile) {
+        tiles[windowColumn * windowRows + row] = tile;
+    }
+
+    /**
+     * Add a prerendered chunk image covering part of the tile window.
+     * @param image The chunk image, as tall as the map.
+     * @param firstColumn The map column of the chunk's leftmost column.
+     * @param columns The chunk width in tiles.
+     */
+    public void addChunk(BufferedImage image, int firstColumn, int columns) {
+        if (chunkCount == chunkImages.length) {
+            int capacity = chunkCount * 2;
+            chunkImages = Arrays.copyOf(chunkImages, capacity);
+            chunkFirstColumn = Arrays.copyOf(chunkFirstColumn, capacity);
+            chunkColumns = Arrays.copyOf(chunkColumns, capacity);
+        }
+
+        chunkImages[chunkCount] = image;
+        chunkFirstColumn[chunkCount] = firstColumn;
+        chunkColumns[chunkCount] = columns;
+        chunkCount++;
+    }
+
+    /**
+     * Add a sprite to the frame.
+     * @param image The animation frame to draw.
+     * @param previousX The sprite's center x during the previous tick.
+     * @param previousY The sprite's center y during the previous tick.
+     * @param x The sprite's current center x.
+     * @param y The sprite's current center y.
+     * @param alpha The opacity to draw the sprite with.
+     */
+    public void addSprite(BufferedImage image, double previousX, double previousY, double x, double y, float alpha) {
+        if (spriteCount == spriteImages.length) {
+            int capacity = spriteCount * 2;
+            spriteImages = Arrays.copyOf(spriteImages, capacity);
+            spritePreviousX = Arrays.copyOf(spritePreviousX, capacity);
+            spritePreviousY = Arrays.copyOf(spritePreviousY, capacity);
+            spriteX = Arrays.copyOf(spriteX, capacity);
+            spriteY = Arrays.copyOf(spriteY, capacity);
+            spriteAlpha = Arrays.copyOf(spriteAlpha, capacity);
+        }
+
+        spriteImages[spriteCount] = image;
+        spritePreviousX[spriteCount] = previousX;
+        spritePreviousY[spriteCount] = previousY;
+        spriteX[spriteCount] = x;
+        spriteY[spriteCount] = y;
+        spriteAlpha[spriteCount] = alpha;
+        spriteCount++;
+    }
+
+    public void setHUD(int health, int maxHealth, int healCounter, int healThreshold) {
+        this.health = health;
+        this.maxHealth = maxHealth;
+        this.healCounter = healCounter;
+        this.healThreshold = healThreshold;
+    }
+
+    public void setLoadingProgress(double loadingProgress) { this.loadingProgress = loadingProgress; }
+    public void setMenuChoice(int menuChoice) { this.menuChoice = menuChoice; }
+    public void setMuted(boolean muted) { this.muted = muted; }
+
+    public void setScores(double previousScore, double bestScore) {
+        this.previousScore = previousScore;
+        this.bestScore = bestScore;
+    }
+
+    public long getTick() { return tick; }
+    public long getPublishTime() { return publishTime; }
+    public StateType getState() { return state; }
+    public boolean isTransitioning() { return transitioning; }
+    public int getTransitionCounter() { return transitionCounter; }
+    public boolean isProfilerVisible() { return profilerVisible; }
+    public long getInputTimestamp() { return inputTimestamp; }
+    public String getTileConfiguration() { return tileConfiguration; }
+    public double getScrollSpeed() { return scrollSpeed; }
+
+    public double getCameraX(double interpolation) { return previousCameraX + (cameraX - previousCameraX) * interpolation; }
+    public double getCameraY(double interpolation) { return previousCameraY + (cameraY - previousCameraY) * interpolation; }
+
+    public double getBackgroundX() { return backgroundX; }
+    public double getBackgroundY() { return backgroundY; }
+
+    public int getFirstColumn() { return firstColumn; }
+    public int getWindowColumns() { return windowColumns; }
+    public int getWindowRows() { return windowRows; }
+    public int getTile(int windowColumn, int row) { return tiles[windowColumn * windowRows + row]; }
+
+    public int getChunkCount() { return chunkCount; }
+    public BufferedImage getChunkImage(int i) { return chunkImages[i]; }
+    public int getChunkFirstColumn(int i) { return chunkFirstColumn[i]; }
+    public int getChunkColumns(int i) { return chunkColumns[i]; }
+
+    public int getSpriteCount() { return spriteCount; }
+    public BufferedImage getSpriteImage(int i) { return spriteImages[i]; }
+    public double getSpriteX(int i, double interpolation) { return spritePreviousX[i] + (spriteX[i] - spritePreviousX[i]) * interpolation; }
+    public double getSpriteY(int i, double interpolation) { return spritePreviousY[i] + (spriteY[i] - spritePreviousY[i]) * interpolation; }
+    public float getSpriteAlpha(int i) { return spriteAlpha[i]; }
+
+    public int getHealth() { return health; }
+    public int getMaxHealth() { return maxHealth; }
+    public int getHealCounter() { return healCounter; }
+    public int getHealThreshold() { return healThreshold; }
+
+    public double getLoadingProgress() { return loadingProgress; }
+    public int getMenuChoice() { return menuChoice; }
+    public boolean isMuted() { return muted; }
+    public double getPreviousScore() { return previousScore; }
+    public double getBestScore() { return bestScore; }
+}
@@ -0,0 +1,66 @@
+package Rendering;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free single-producer/single-consumer triple buffer. The producer always owns one buffer (back), the consumer
+ * always owns another (front), and the third (middle) is handed between them with a single atomic swap. Neither side
+ * ever waits for the other: the producer may publish any number of times between two reads and the consumer always
+ * gets the most recently published buffer.
+ * @param <T> The buffer type. Buffers are preallocated and reused, so the producer has to fully overwrite them.
+ */
+public class TripleBuffer<T> {
+
+    /* The middle index is packed together with a flag that is set when it holds an unread buffer */
+    private static final int INDEX_MASK = 0b011;
+    private static final int DIRTY = 0b100;
+
+    private final Object[] buffers;
+    private final AtomicInteger middle;
+
+    /* Only touched by the producer */
+    private int back;
+
+    /* Only touched by the consumer */
+    private int front;
+    private boolean published;
+
+    public TripleBuffer(Supplier<T> factory) {
+        this.buffers = new Object[] { factory.get(), factory.get(), factory.get() };
+        this.back = 0;
+        this.middle = new AtomicInteger(1);
+        this.front = 2;
+        this.published = false;
+    }
+
+    /**
+     * Producer side. Get the buffer that may be filled before the next call to publish().
+     */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer() {
+        return (T) buffers[back];
+    }
+
+    /**
+     * Producer side. Make the current write buffer available to the consumer and take over the middle buffer.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | DIRTY) & INDEX_MASK;
+    }
+
+    /**
+     * Consumer side. Swap in the latest published buffer, if there is a new one, and return it. The returned buffer
+     * stays valid and unchanged until the next call to this method.
+     * @return The latest published buffer, or null if nothing has been published yet.
+     */
+    @SuppressWarnings("unchecked")
+    public T getReadBuffer() {
+        if ((middle.get() & DIRTY) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+            published = true;
+        }
+
+        return published ? (T) buffers[front] : null;
+    }
+}
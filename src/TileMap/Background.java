@@ -1,14 +1,16 @@
 package TileMap;
 
+import Assets.SpriteCache;
+import Assets.SpriteSheet;
+import GameState.StateStream;
 import Main.GamePanel;
+import Rendering.FrameSnapshot;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
 
 public class Background {
-    private BufferedImage image;
+    private SpriteSheet image;
 
     private double x;
     private double y;
@@ -17,9 +19,7 @@ public class Background {
 
     public Background(String s) {
         try {
-            image = ImageIO.read(
-                    new File(s)
-            );
+            image = SpriteCache.get(s);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -39,7 +39,29 @@ public class Background {
         y = moduloDouble(y, GamePanel.HEIGHT);
     }
 
-    public void draw(Graphics2D g) {
+    /**
+     * Capture or restore the scroll position, see StateStream.
+     * @param s The stream.
+     */
+    public void syncState(StateStream s) {
+        this.x = s.sync(this.x);
+        this.y = s.sync(this.y);
+    }
+
+    public void capture(FrameSnapshot snapshot) {
+        snapshot.setBackgroundPosition(this.x, this.y);
+    }
+
+    /**
+     * Draw the background at the position captured in the snapshot.
+     * @param g The Graphics2D object to draw into.
+     * @param snapshot The frame being drawn.
+     */
+    public void draw(Graphics2D g, FrameSnapshot snapshot) {
+        double x = snapshot.getBackgroundX();
+        double y = snapshot.getBackgroundY();
+        BufferedImage image = this.image.getFrame(0, 0);
+
         g.drawImage(image, (int) x, (int) y, null);
 
         /* Fill up empty space on border when scrolling horizontally */
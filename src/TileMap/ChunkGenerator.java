@@ -0,0 +1,394 @@
+package TileMap;
+
+import GameState.SplitMix64;
+import Networking.WeatherData;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Generates map chunks out of parameterised features (stairs, bumps, pits and platforms), as an endless supply of new
+ * level structure next to the hand-made TileConfigurations. Which features appear, how wide pits get and how high
+ * steps go depends on the weather.
+ *
+ * A chunk is laid out as a surface height per column first, which is then dressed with the same tiles the hand-made
+ * chunks use. Every chunk is checked by a ChunkValidator at the current scroll speed; chunks the player could not get
+ * through are thrown away and generated again, for as long as the time budget and number of attempts allow. Like the hand-made chunks,
+ * generated ones start and end on flat ground in the bottom row, so any two chunks fit together.
+ *
+ * Reuses its buffers between chunks, so a generator must only be used by one thread.
+ */
+class ChunkGenerator {
+
+    private enum Feature {
+        FLAT, STAIRS, BUMP, PIT, PLATFORMS
+    }
+
+    /* Chunk width bounds, in columns */
+    static final int MIN_COLUMNS = 20;
+    static final int MAX_COLUMNS = 28;
+
+    /* Flat columns at either end of every chunk */
+    private static final int BORDER_COLUMNS = 2;
+    /* Highest row a surface may be raised to, so the player always has room to jump on top of it */
+    private static final int MIN_SURFACE_ROW = 3;
+    /* Surface height of pit columns */
+    private static final int PIT = Integer.MAX_VALUE;
+
+    /* Tile IDs, as used by the hand-made chunks. Everything from the tileset's second row (IDs 21 up) is solid */
+    private static final int SOLID_TILES_FROM = 21;
+    private static final byte GROUND = 21;
+    private static final byte FILL = 22;
+    private static final byte LEFT_EDGE = 26;
+    private static final byte RIGHT_EDGE = 27;
+    private static final byte LEFT_WALL = 28;
+    private static final byte RIGHT_WALL = 29;
+    private static final byte LEFT_CORNER = 1;
+    private static final byte RIGHT_CORNER = 2;
+    private static final byte PLATFORM_LEFT = 23;
+    private static final byte PLATFORM_MIDDLE = 24;
+    private static final byte PLATFORM_RIGHT = 25;
+    private static final byte[] DECORATIONS = { 9, 10, 11 };
+    private static final double DECORATION_CHANCE = 0.15;
+
+    private final int rows;
+    private SplitMix64 rng;
+    private final ChunkValidator validator;
+
+    /* Weather dependent parameters */
+    private final int[] featureWeights;
+    private final int totalWeight;
+    private final int maxPitWidth;
+    private final int maxStepHeight;
+
+    /* Chunk being generated */
+    private final int[] surface;
+    private final int[] platformRow;
+    private final short[] solidity;
+    private int columns;
+    private final StringBuilder name;
+
+    /* Statistics */
+    private long generated;
+    private long rejected;
+
+    /**
+     * @param tileSize The tile size in pixels.
+     * @param rows The number of tiles per column.
+     * @param weatherData The weather the chunks are generated for.
+     */
+    ChunkGenerator(int tileSize, int rows, WeatherData weatherData) {
+        this.rows = rows;
+        this.validator = new ChunkValidator(tileSize, rows, MAX_COLUMNS);
+
+        this.featureWeights = getFeatureWeights(weatherData.getWeatherString());
+        int total = 0;
+        for (int weight: featureWeights) {
+            total += weight;
+        }
+        this.totalWeight = total;
+
+        /* Strong wind widens the pits, high humidity raises the steps */
+        this.maxPitWidth = (int) Math.round(clamp(2, 4, 2 + weatherData.getWindSpeed() / 5));
+        this.maxStepHeight = (weatherData.getHumidity() > 70) ? 2 : 1;
+
+        this.surface = new int[MAX_COLUMNS];
+        this.platformRow = new int[MAX_COLUMNS];
+        this.solidity = new short[MAX_COLUMNS];
+        this.name = new StringBuilder();
+    }
+
+    /**
+     * Set the random stream chunks are drawn from. Given the same stream, the same chunks are generated.
+     */
+    void setRandom(SplitMix64 rng) {
+        this.rng = rng;
+    }
+
+    /**
+     * Generate a chunk the player can get through.
+     * @param scrollSpeed The scroll speed the chunk has to be cleared at.
+     * @param deadline The System.nanoTime() after which generating and validating is given up, including any rejected
+     *                 attempts. Long.MAX_VALUE for no time limit.
+     * @param maxAttempts The number of chunks to try at most.
+     * @return The chunk, or null if no valid chunk was found within the budget.
+     */
+    ChunkView generate(double scrollSpeed, long deadline, int maxAttempts) {
+        if (rng == null) {
+            throw new IllegalStateException("No random stream set");
+        }
+
+        int attempts = 0;
+        do {
+            long seed = rng.getState();
+            layout();
+            byte[] tiles = dress();
+
+            if (validator.validate(solidity, columns, scrollSpeed, deadline)) {
+                generated++;
+                return new ChunkView(name.toString(), columns, rows, ByteBuffer.wrap(tiles).asReadOnlyBuffer(), seed);
+            }
+            rejected++;
+            attempts++;
+        } while (attempts < maxAttempts && !validator.isTimedOut() && System.nanoTime() < deadline);
+
+        return null;
+    }
+
+    /**
+     * Lay out a chunk generated before again, without validating it. Leaves the random stream set with setRandom()
+     * untouched.
+     * @param seed The generator state the chunk was laid out from, see ChunkView.getSeed().
+     * @return The chunk.
+     */
+    ChunkView regenerate(long seed) {
+        SplitMix64 stream = rng;
+        rng = new SplitMix64(seed);
+        try {
+            layout();
+            byte[] tiles = dress();
+            return new ChunkView(name.toString(), columns, rows, ByteBuffer.wrap(tiles).asReadOnlyBuffer(), seed);
+        } finally {
+            rng = stream;
+        }
+    }
+
+    /**
+     * @return The average chunk width, in columns.
+     */
+    double getAverageLength() {
+        return (MIN_COLUMNS + MAX_COLUMNS) / 2.0;
+    }
+
+    long getGenerated() {
+        return generated;
+    }
+
+    long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Pick the chunk width and lay out the surface height of every column from a sequence of random features.
+     */
+    private void layout() {
+        columns = MIN_COLUMNS + rng.nextInt(MAX_COLUMNS - MIN_COLUMNS + 1);
+        name.setLength(0);
+        name.append("generated");
+
+        int ground = rows - 1;
+        int end = columns - BORDER_COLUMNS;
+        int height = ground;
+        int col = 0;
+
+        for (; col < BORDER_COLUMNS; col++) {
+            surface[col] = ground;
+            platformRow[col] = -1;
+        }
+
+        while (col < end) {
+            Feature feature = pickFeature();
+            int start = col;
+
+            switch (feature) {
+                case STAIRS: {
+                    /* A flight of one row steps, up if there is room and down otherwise */
+                    int direction = (height - MIN_SURFACE_ROW >= 2) ? -1 : 1;
+                    int steps = 1 + rng.nextInt(3);
+                    for (int i = 0; i < steps && col < end; i++) {
+                        int next = height + direction;
+                        if (next < MIN_SURFACE_ROW || next > ground) break;
+                        height = next;
+                        col = fill(col, end, height, 1 + rng.nextInt(2));
+                    }
+                    col = fill(col, end, height, 2);
+                    break;
+                }
+                case BUMP: {
+                    int raised = Math.max(MIN_SURFACE_ROW, height - 1 - rng.nextInt(maxStepHeight));
+                    col = fill(col, end, raised, 2 + rng.nextInt(3));
+                    col = fill(col, end, height, 2);
+                    break;
+                }
+                case PIT: {
+                    col = fill(col, end - 2, PIT, 1 + rng.nextInt(maxPitWidth));
+                    height = clamp(MIN_SURFACE_ROW, ground, height - 1 + rng.nextInt(3));
+                    col = fill(col, end, height, 2 + rng.nextInt(2));
+                    break;
+                }
+                case PLATFORMS: {
+                    /* A pit too wide to jump across, with a floating platform half way */
+                    int width = 5 + rng.nextInt(maxPitWidth);
+                    if (col + width + 2 > end) {
+                        feature = Feature.FLAT;
+                        col = fill(col, end, height, 2);
+                        break;
+                    }
+                    int length = 2 + rng.nextInt(2);
+                    int row = Math.max(MIN_SURFACE_ROW - 1, height - 1 - rng.nextInt(2));
+                    int platformStart = col + (width - length) / 2;
+
+                    col = fill(col, end, PIT, width);
+                    for (int i = platformStart; i < platformStart + length; i++) {
+                        platformRow[i] = row;
+                    }
+                    col = fill(col, end, height, 2 + rng.nextInt(2));
+                    break;
+                }
+                case FLAT:
+                default:
+                    col = fill(col, end, height, 2 + rng.nextInt(3));
+                    break;
+            }
+
+            if (col > start && feature != Feature.FLAT) {
+                name.append(':').append(feature.name().toLowerCase());
+            }
+        }
+
+        for (; col < columns; col++) {
+            surface[col] = ground;
+            platformRow[col] = -1;
+        }
+
+        removePeaks();
+    }
+
+    /**
+     * Set the surface height of up to count columns, stopping at the given end.
+     * @return The column after the last one filled.
+     */
+    private int fill(int col, int end, int height, int count) {
+        int last = Math.min(end, col + count);
+        for (; col < last; col++) {
+            surface[col] = height;
+            platformRow[col] = -1;
+        }
+        return col;
+    }
+
+    /**
+     * Lower single columns that stick out above both of their neighbours, the tileset has no tiles for them.
+     */
+    private void removePeaks() {
+        for (int col = 1; col < columns - 1; col++) {
+            int left = surface[col - 1];
+            int right = surface[col + 1];
+            if (surface[col] < left && surface[col] < right) {
+                surface[col] = Math.min(left, right);
+            }
+        }
+    }
+
+    /**
+     * Turn the surface heights into tiles and compute the solid rows of every column.
+     * @return The chunk's tiles, column by column.
+     */
+    private byte[] dress() {
+        byte[] tiles = new byte[columns * rows];
+
+        for (int col = 0; col < columns; col++) {
+            int base = col * rows;
+            int height = surface[col];
+
+            if (height != PIT) {
+                /* The neighbour surfaces, with pits counting as one row below the map */
+                int left = (col > 0) ? Math.min(surface[col - 1], rows) : rows - 1;
+                int right = (col < columns - 1) ? Math.min(surface[col + 1], rows) : rows - 1;
+
+                if (left > height) {
+                    tiles[base + height] = LEFT_EDGE;
+                    setWall(tiles, base, height + 1, left, LEFT_WALL, LEFT_CORNER);
+                } else if (right > height) {
+                    tiles[base + height] = RIGHT_EDGE;
+                    setWall(tiles, base, height + 1, right, RIGHT_WALL, RIGHT_CORNER);
+                } else {
+                    tiles[base + height] = GROUND;
+                    setWall(tiles, base, height + 1, height + 1, FILL, FILL);
+
+                    if (height > 0 && rng.nextDouble() < DECORATION_CHANCE) {
+                        tiles[base + height - 1] = DECORATIONS[rng.nextInt(DECORATIONS.length)];
+                    }
+                }
+            }
+
+            if (platformRow[col] >= 0) {
+                boolean first = (col == 0) || platformRow[col - 1] != platformRow[col];
+                boolean last = (col == columns - 1) || platformRow[col + 1] != platformRow[col];
+                tiles[base + platformRow[col]] = first ? PLATFORM_LEFT : (last ? PLATFORM_RIGHT : PLATFORM_MIDDLE);
+            }
+
+            int bits = 0;
+            for (int row = 0; row < rows; row++) {
+                if ((tiles[base + row] & 0xFF) >= SOLID_TILES_FROM) {
+                    bits |= 1 << row;
+                }
+            }
+            solidity[col] = (short) bits;
+        }
+
+        return tiles;
+    }
+
+    /**
+     * Fill a column from a row downwards: wall tiles down to the neighbouring surface, a corner where it meets the
+     * neighbour's surface, and fill below that.
+     */
+    private void setWall(byte[] tiles, int base, int from, int neighbourSurface, byte wall, byte corner) {
+        for (int row = from; row < rows; row++) {
+            if (row < neighbourSurface) {
+                tiles[base + row] = wall;
+            } else if (row == neighbourSurface) {
+                tiles[base + row] = corner;
+            } else {
+                tiles[base + row] = FILL;
+            }
+        }
+    }
+
+    private Feature pickFeature() {
+        int pick = rng.nextInt(totalWeight);
+        for (Feature feature: Feature.values()) {
+            pick -= featureWeights[feature.ordinal()];
+            if (pick < 0) {
+                return feature;
+            }
+        }
+        return Feature.FLAT;
+    }
+
+    /**
+     * Relative frequencies of the features, in Feature order. Mirrors the hand-made chunk selection: clear skies are
+     * all stairs and bumps, rain brings pits and platforms, clouds a bit of everything.
+     */
+    private static int[] getFeatureWeights(String weather) {
+        switch (weather) {
+            case "Clear":
+                return new int[] { 2, 3, 3, 1, 0 };
+            case "Clouds":
+                return new int[] { 2, 2, 2, 2, 2 };
+            case "Thunderstorm":
+            case "Drizzle":
+            case "Rain":
+            case "Snow":
+            case "Mist":
+            case "Smoke":
+            case "Haze":
+            case "Dust":
+            case "Fog":
+            case "Sand":
+            case "Ash":
+            case "Squall":
+            case "Tornado":
+            default:
+                return new int[] { 2, 1, 1, 3, 2 };
+        }
+    }
+
+    private static int clamp(int min, int max, int value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static double clamp(double min, double max, double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
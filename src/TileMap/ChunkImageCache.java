@@ -0,0 +1,251 @@
+package TileMap;
+
+import Assets.CompatibleImages;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Least recently used cache of map chunks rendered into single images, keyed by the absolute map column each chunk
+ * starts at. It only holds a handful of chunks, so they are kept in plain arrays and found by a linear scan: a lookup
+ * every tick boxes no key and walks no entry set, and every chunk remembers when it was last used instead of being
+ * moved to the end of a linked list. Chunks are rendered on a background thread, so a lookup never blocks: if a chunk's image is not ready
+ * yet, the caller draws its tiles one by one and asks again next frame.
+ *
+ * Chunks waiting to be rendered are kept in a fixed size queue rather than handed to an executor, so queueing one
+ * allocates nothing on the game thread. When the queue is full, a chunk is simply queued on a later request.
+ *
+ * Images are rendered in the display's pixel format. When the renderer moves to a display with another format, see
+ * CompatibleImages.setTarget(), the next lookup drops every image, and the chunks are rendered again as they are asked
+ * for.
+ */
+class ChunkImageCache {
+
+    private final int tileSize;
+    private final int rows;
+
+    /* Cached chunks: start column, image, the number of map columns covered and the use they were last looked up at */
+    private final long[] startColumns;
+    private final BufferedImage[] images;
+    private final int[] columns;
+    private final long[] lastUses;
+    private int size;
+    /* Counts lookups, to order chunks by their last use */
+    private long uses;
+
+    /* Render queue: a ring of the start columns and tiles of chunks waiting to be rendered */
+    private final long[] queuedColumns;
+    private final ChunkView[] queuedChunks;
+    private int queueHead;
+    private int queueSize;
+    /* Start column of the chunk being rendered, NOT_RENDERING if there is none */
+    private long renderingColumn;
+    private static final long NOT_RENDERING = Long.MIN_VALUE;
+
+    /* Bumped whenever the cache is cleared, so renders started before that are thrown away */
+    private long generation;
+    /* CompatibleImages.getFormatChanges() as of the last lookup */
+    private int formatChanges;
+
+    /* Tileset the chunks are rendered with */
+    private Tile[][] tiles;
+    private int numTilesAcross;
+
+    private final Thread renderer;
+
+    /**
+     * @param tileSize The tile size in pixels.
+     * @param rows The number of tiles per column.
+     * @param maxChunks The maximum number of chunk images kept at once.
+     */
+    ChunkImageCache(int tileSize, int rows, int maxChunks) {
+        this.tileSize = tileSize;
+        this.rows = rows;
+
+        this.startColumns = new long[maxChunks];
+        this.images = new BufferedImage[maxChunks];
+        this.columns = new int[maxChunks];
+        this.lastUses = new long[maxChunks];
+        this.queuedColumns = new long[maxChunks];
+        this.queuedChunks = new ChunkView[maxChunks];
+        this.renderingColumn = NOT_RENDERING;
+        this.formatChanges = CompatibleImages.getFormatChanges();
+
+        this.renderer = new Thread(this::renderQueued, "ChunkRenderer");
+        this.renderer.setDaemon(true);
+        this.renderer.start();
+    }
+
+    /**
+     * Set the tileset to render with. Drops every chunk rendered with the previous one.
+     */
+    synchronized void setTiles(Tile[][] tiles, int numTilesAcross) {
+        this.tiles = tiles;
+        this.numTilesAcross = numTilesAcross;
+        clear();
+    }
+
+    /**
+     * Get a chunk's image, queueing it for rendering if it is not cached yet.
+     * @param startColumn The absolute map column the chunk starts at.
+     * @param chunk The chunk's tiles.
+     * @return The image, or null if it is not ready yet.
+     */
+    synchronized BufferedImage get(long startColumn, ChunkView chunk) {
+        if (formatChanges != CompatibleImages.getFormatChanges()) {
+            formatChanges = CompatibleImages.getFormatChanges();
+            clear();
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (startColumns[i] == startColumn) {
+                lastUses[i] = ++uses;
+                return images[i];
+            }
+        }
+
+        if (tiles != null && queueSize < queuedColumns.length && !isPending(startColumn)) {
+            int tail = (queueHead + queueSize) % queuedColumns.length;
+            queuedColumns[tail] = startColumn;
+            queuedChunks[tail] = chunk;
+            queueSize++;
+            notifyAll();
+        }
+
+        return null;
+    }
+
+    /**
+     * Check whether a chunk is queued or being rendered.
+     */
+    private boolean isPending(long startColumn) {
+        if (startColumn == renderingColumn) {
+            return true;
+        }
+        for (int i = 0; i < queueSize; i++) {
+            if (queuedColumns[(queueHead + i) % queuedColumns.length] == startColumn) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Body of the renderer thread: render queued chunks one after the other, waiting while there are none.
+     */
+    private void renderQueued() {
+        while (true) {
+            long startColumn;
+            ChunkView chunk;
+            long submittedGeneration;
+            Tile[][] tileset;
+            int tilesetWidth;
+
+            synchronized (this) {
+                while (queueSize == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                startColumn = queuedColumns[queueHead];
+                chunk = queuedChunks[queueHead];
+                queuedChunks[queueHead] = null;
+                queueHead = (queueHead + 1) % queuedColumns.length;
+                queueSize--;
+
+                renderingColumn = startColumn;
+                submittedGeneration = generation;
+                tileset = tiles;
+                tilesetWidth = numTilesAcross;
+            }
+
+            BufferedImage image = render(chunk, tileset, tilesetWidth);
+            store(submittedGeneration, startColumn, image, chunk.getColumns());
+        }
+    }
+
+    /**
+     * Drop every chunk that ends left of the given absolute column.
+     */
+    synchronized void evictBefore(long column) {
+        int i = 0;
+        while (i < size) {
+            if (startColumns[i] + columns[i] <= column) {
+                remove(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            images[i] = null;
+        }
+        size = 0;
+        for (int i = 0; i < queuedChunks.length; i++) {
+            queuedChunks[i] = null;
+        }
+        queueSize = 0;
+        renderingColumn = NOT_RENDERING;
+        generation++;
+    }
+
+    private synchronized void store(long submittedGeneration, long startColumn, BufferedImage image, int chunkColumns) {
+        if (submittedGeneration != generation) {
+            return;
+        }
+
+        renderingColumn = NOT_RENDERING;
+        if (size == startColumns.length) {
+            /* Make room by dropping the least recently used chunk */
+            int eldest = 0;
+            for (int i = 1; i < size; i++) {
+                if (lastUses[i] < lastUses[eldest]) {
+                    eldest = i;
+                }
+            }
+            remove(eldest);
+        }
+
+        startColumns[size] = startColumn;
+        images[size] = image;
+        columns[size] = chunkColumns;
+        lastUses[size] = ++uses;
+        size++;
+    }
+
+    /**
+     * Drop a cached chunk by moving the last one into its place.
+     */
+    private void remove(int index) {
+        size--;
+        startColumns[index] = startColumns[size];
+        images[index] = images[size];
+        columns[index] = columns[size];
+        lastUses[index] = lastUses[size];
+        images[size] = null;
+    }
+
+    private BufferedImage render(ChunkView chunk, Tile[][] tileset, int tilesetWidth) {
+        BufferedImage image = CompatibleImages.create(chunk.getColumns() * tileSize, rows * tileSize, Transparency.BITMASK);
+        Graphics2D g = image.createGraphics();
+
+        for (int col = 0; col < chunk.getColumns(); col++) {
+            for (int row = 0; row < rows; row++) {
+                int tile = chunk.getTile(col, row);
+
+                /* The first tile in the tileset is empty */
+                if (tile == 0) continue;
+
+                g.drawImage(TileMap.resolveTile(tileset, tilesetWidth, tile).getImage(), col * tileSize, row * tileSize, null);
+            }
+        }
+
+        g.dispose();
+        return image;
+    }
+}
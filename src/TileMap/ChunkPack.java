@@ -0,0 +1,123 @@
+package TileMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of map chunks precompiled into one binary file by ChunkPackCompiler. The file is memory-mapped and every chunk
+ * is exposed as a ChunkView straight into the mapping, so loading a pack only reads its index.
+ *
+ * The format is big-endian:
+ * header:  int magic, short version, short rows, int chunk count
+ * index:   per chunk: short name length, name (UTF-8), int tile data offset, short columns
+ * data:    per chunk: columns * rows tile IDs, one unsigned byte each, column by column
+ */
+public class ChunkPack {
+
+    public static final String DEFAULT_LOCATION = "Resources/Maps/chunks.pack";
+
+    static final int MAGIC = 0x52524350; /* "RRCP" */
+    static final short VERSION = 1;
+
+    private static ChunkPack defaultPack;
+
+    private final int rows;
+    private final Map<String, ChunkView> chunks;
+
+    private ChunkPack(int rows, Map<String, ChunkView> chunks) {
+        this.rows = rows;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Get the pack the tile configurations are loaded from, mapping it on first use.
+     */
+    public static synchronized ChunkPack getDefault() {
+        if (defaultPack == null) {
+            try {
+                defaultPack = load(Paths.get(DEFAULT_LOCATION));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not load chunk pack " + DEFAULT_LOCATION, e);
+            }
+        }
+
+        return defaultPack;
+    }
+
+    /**
+     * Map a chunk pack file and read its index.
+     * @param path The pack file.
+     * @return The pack.
+     * @throws IOException If the file cannot be read.
+     */
+    public static ChunkPack load(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            /* The mapping stays valid after the channel has been closed */
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException(path + " is not a chunk pack");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(path + " has unsupported chunk pack version " + version);
+        }
+
+        int rows = buffer.getShort();
+        int count = buffer.getInt();
+
+        Map<String, ChunkView> chunks = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            byte[] nameBytes = new byte[buffer.getShort()];
+            buffer.get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            int offset = buffer.getInt();
+            int columns = buffer.getShort();
+            int length = columns * rows;
+
+            if (offset < 0 || offset + length > buffer.capacity()) {
+                throw new IllegalArgumentException("Chunk " + name + " lies outside of " + path);
+            }
+
+            ByteBuffer tiles = buffer.duplicate();
+            tiles.position(offset);
+            tiles.limit(offset + length);
+            chunks.put(name, new ChunkView(name, columns, rows, tiles.slice()));
+        }
+
+        return new ChunkPack(rows, chunks);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Look up a chunk by name.
+     * @param name The chunk's name, which is the name of the map file it was compiled from without the extension.
+     * @return The chunk.
+     */
+    public ChunkView getChunk(String name) {
+        ChunkView chunk = chunks.get(name);
+        if (chunk == null) {
+            throw new IllegalArgumentException("No chunk named " + name + " in the chunk pack");
+        }
+
+        return chunk;
+    }
+}
@@ -0,0 +1,155 @@
+package TileMap;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiles the text .map chunk files into a single ChunkPack. Has to be rerun whenever a .map file changes:
+ *
+ *     java TileMap.ChunkPackCompiler [map directory] [output file]
+ *
+ * A .map file starts with its number of columns and its number of rows, one per line, followed by one line per
+ * column holding that column's tile IDs from top to bottom, separated by whitespace.
+ */
+public class ChunkPackCompiler {
+
+    public static void main(String[] args) throws IOException {
+        Path mapDirectory = Paths.get(args.length > 0 ? args[0] : "Resources/Maps");
+        Path output = Paths.get(args.length > 1 ? args[1] : ChunkPack.DEFAULT_LOCATION);
+
+        List<Path> mapFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(mapDirectory, "*.map")) {
+            for (Path file: stream) {
+                mapFiles.add(file);
+            }
+        }
+        /* Sort so the pack does not depend on directory order */
+        Collections.sort(mapFiles);
+
+        if (mapFiles.isEmpty()) {
+            throw new IllegalArgumentException("No .map files in " + mapDirectory);
+        }
+
+        List<String> names = new ArrayList<>();
+        List<int[][]> chunks = new ArrayList<>();
+        for (Path file: mapFiles) {
+            String fileName = file.getFileName().toString();
+            names.add(fileName.substring(0, fileName.length() - ".map".length()));
+            chunks.add(parseMapFile(file));
+        }
+
+        Files.write(output, compile(names, chunks));
+        System.out.println("Compiled " + chunks.size() + " chunks into " + output);
+    }
+
+    /**
+     * Read a .map file.
+     * @return The chunk's tile IDs, indexed by column and then row.
+     * @throws IllegalArgumentException If the file is malformed.
+     */
+    static int[][] parseMapFile(Path file) throws IOException {
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int numCols = parseNumber(file, br.readLine());
+            int numRows = parseNumber(file, br.readLine());
+
+            int[][] columns = new int[numCols][numRows];
+            for (int col = 0; col < numCols; col++) {
+                String line = br.readLine();
+                if (line == null) {
+                    throw new IllegalArgumentException(file + ": expected " + numCols + " columns, found " + col);
+                }
+
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens.length != numRows) {
+                    throw new IllegalArgumentException(file + ": column " + col + " has " + tokens.length + " rows, expected " + numRows);
+                }
+
+                for (int row = 0; row < numRows; row++) {
+                    int tile = parseNumber(file, tokens[row]);
+                    if (tile > 255) {
+                        throw new IllegalArgumentException(file + ": tile ID " + tile + " does not fit into a byte");
+                    }
+                    columns[col][row] = tile;
+                }
+            }
+
+            return columns;
+        }
+    }
+
+    /**
+     * Lay out a chunk pack. All chunks must have the same number of rows.
+     */
+    static byte[] compile(List<String> names, List<int[][]> chunks) throws IOException {
+        int rows = chunks.get(0)[0].length;
+
+        /* Size of the header and the index, which the data offsets start after */
+        int dataOffset = 4 + 2 + 2 + 4;
+        for (String name: names) {
+            dataOffset += 2 + name.getBytes(StandardCharsets.UTF_8).length + 4 + 2;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(ChunkPack.MAGIC);
+        out.writeShort(ChunkPack.VERSION);
+        out.writeShort(rows);
+        out.writeInt(chunks.size());
+
+        int offset = dataOffset;
+        for (int i = 0; i < chunks.size(); i++) {
+            int[][] chunk = chunks.get(i);
+            for (int[] column: chunk) {
+                if (column.length != rows) {
+                    throw new IllegalArgumentException(names.get(i) + " has " + column.length + " rows, expected " + rows);
+                }
+            }
+
+            byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeInt(offset);
+            out.writeShort(chunk.length);
+
+            offset += chunk.length * rows;
+        }
+
+        for (int[][] chunk: chunks) {
+            for (int[] column: chunk) {
+                for (int tile: column) {
+                    out.writeByte(tile);
+                }
+            }
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int parseNumber(Path file, String token) {
+        if (token == null) {
+            throw new IllegalArgumentException(file + ": unexpected end of file");
+        }
+
+        try {
+            int value = Integer.parseInt(token.trim());
+            if (value < 0) {
+                throw new IllegalArgumentException(file + ": negative number " + value);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(file + ": not a number: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package TileMap;
+
+import java.util.Arrays;
+
+/**
+ * The chunks a recorded run appended to its map, in order, so a replay can rebuild the exact same map no matter how
+ * fast the chunks were prepared back then. Generated chunks are kept as the generator state they were laid out from,
+ * hand-made ones and filler as their TileConfiguration.
+ */
+public class ChunkScript {
+
+    /* Generator states of generated chunks, configuration ordinals of hand-made ones */
+    private long[] values;
+    private boolean[] generated;
+    private int size;
+
+    public ChunkScript() {
+        this.values = new long[16];
+        this.generated = new boolean[16];
+        this.size = 0;
+    }
+
+    /**
+     * Append a generated chunk.
+     * @param seed The generator state it was laid out from, see ChunkView.getSeed().
+     */
+    public void addGenerated(long seed) {
+        add(seed, true);
+    }
+
+    /**
+     * Append a hand-made chunk.
+     * @param configuration The configuration.
+     */
+    public void addHandMade(TileConfiguration configuration) {
+        add(configuration.ordinal(), false);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Build a chunk of the script again.
+     * @param index The index of the chunk.
+     * @param generator The generator to lay out generated chunks with.
+     * @return The chunk.
+     */
+    ChunkView build(int index, ChunkGenerator generator) {
+        if (generated[index]) {
+            return generator.regenerate(values[index]);
+        }
+        return TileConfiguration.forOrdinal((int) values[index]).getChunk();
+    }
+
+    private void add(long value, boolean isGenerated) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            generated = Arrays.copyOf(generated, size * 2);
+        }
+        values[size] = value;
+        generated[size] = isGenerated;
+        size++;
+    }
+}
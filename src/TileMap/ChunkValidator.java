@@ -0,0 +1,303 @@
+package TileMap;
+
+import Entity.Player;
+
+import java.util.Arrays;
+
+/**
+ * Checks whether the player can get through a chunk at a given scroll speed. The player is simulated tick by tick with
+ * the same movement and collision rules as the Player and Entity classes, over the chunk's solid tiles only. Starting
+ * on the flat ground the previous chunk ends with, the validator walks along every surface the player can reach,
+ * tries a jump from every tick spent on the ground and a fast fall from every column passed in the air, until some path
+ * makes it to the right edge.
+ *
+ * Ground positions that have already been explored are marked in a reachability grid (one bit per pixel column and
+ * tile row), so every position is only expanded once and the search stays within a few hundred microseconds. Reuses
+ * its buffers between calls, so a validator must only be used by one thread.
+ */
+class ChunkValidator {
+
+    /* Upper bound for a single simulated path, well above the time needed to walk through a chunk at minimum speed */
+    private static final int MAX_TICKS = 4096;
+    /* Ticks between deadline checks */
+    private static final int DEADLINE_INTERVAL = 256;
+    /* Flat columns of the previous chunk the player may already jump from */
+    private static final int LEAD_COLUMNS = 2;
+
+    private final int tileSize;
+    private final int rows;
+    private final int maxColumns;
+
+    /* Chunk being validated: bit n of a column's mask is set if the tile in row n is solid */
+    private short[] solidity;
+    private int columns;
+    private double speed;
+
+    /* Reachability grid, indexed by tile row and pixel column */
+    private final long[] reached;
+    private int reachedWidth;
+
+    /* Ground positions left to jump from */
+    private final double[] pendingX, pendingY, pendingDx;
+    private int pendingCount;
+
+    /* Simulated player, using the same names as Entity. Columns are counted from the first lead column */
+    private double x, y, dx, dy;
+    private boolean falling, fastFalling;
+    private boolean topLeft, topRight, bottomLeft, bottomRight;
+    private final TileSweep sweep;
+    private final TileSweep.SolidTiles tiles;
+
+    private long deadline;
+    private int ticksUntilDeadlineCheck;
+    private boolean timedOut;
+
+    /**
+     * @param tileSize The tile size in pixels.
+     * @param rows The number of tiles per column.
+     * @param maxColumns The widest chunk that will be validated.
+     */
+    ChunkValidator(int tileSize, int rows, int maxColumns) {
+        this.tileSize = tileSize;
+        this.rows = rows;
+        this.maxColumns = maxColumns;
+
+        int positions = rows * (LEAD_COLUMNS + maxColumns) * tileSize;
+        this.reached = new long[(positions + 63) / 64];
+        this.pendingX = new double[positions];
+        this.pendingY = new double[positions];
+        this.pendingDx = new double[positions];
+
+        this.sweep = new TileSweep(tileSize);
+        this.tiles = this::isSolid;
+    }
+
+    /**
+     * Check whether the player can get from the left edge of a chunk to its right edge. Chunks are expected to start
+     * and end on flat ground in the bottom row, as every chunk does; columns outside of the chunk are treated as such.
+     * @param solidity The solid rows of each column as a bitmask, bit n standing for row n.
+     * @param columns The chunk width in tiles.
+     * @param speed The scroll speed, which is also the player's running speed, in pixels per tick.
+     * @param deadline The System.nanoTime() after which validation is given up.
+     * @return True if the chunk can be cleared, false if it cannot or the deadline has passed.
+     */
+    boolean validate(short[] solidity, int columns, double speed, long deadline) {
+        if (columns > maxColumns) {
+            throw new IllegalArgumentException("Chunk is wider than " + maxColumns + " columns");
+        }
+
+        this.solidity = solidity;
+        this.columns = columns;
+        this.speed = speed;
+        this.deadline = deadline;
+        this.ticksUntilDeadlineCheck = DEADLINE_INTERVAL;
+        this.timedOut = false;
+
+        this.reachedWidth = (LEAD_COLUMNS + columns) * tileSize;
+        Arrays.fill(reached, 0, (rows * reachedWidth + 63) / 64, 0L);
+        this.pendingCount = 0;
+
+        /* Run in at full speed, standing on the bottom row */
+        double groundY = (rows - 1) * tileSize - Player.SIZE / 2.0;
+        if (simulate(Player.SIZE / 2.0, groundY, speed, 0, false, false, true)) {
+            return true;
+        }
+
+        while (pendingCount > 0 && !timedOut) {
+            pendingCount--;
+            if (simulate(pendingX[pendingCount], pendingY[pendingCount], pendingDx[pendingCount], 0, false, true, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the last validation was given up because its deadline passed.
+     */
+    boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Follow the player from a position, optionally pressing jump right away, and queue a jump from every new ground
+     * position passed on the way.
+     * @param jump Whether jump is pressed on the first tick: a jump on the ground, a fast fall in the air.
+     * @param branch Whether to try a fast fall from every column passed in the air.
+     * @return True if the path reaches the right edge of the chunk.
+     */
+    private boolean simulate(double startX, double startY, double startDx, double startDy, boolean startFalling, boolean jump, boolean branch) {
+        x = startX;
+        y = startY;
+        dx = startDx;
+        dy = startDy;
+        falling = startFalling;
+        fastFalling = false;
+
+        double goal = (LEAD_COLUMNS + columns) * tileSize - Player.SIZE / 2.0;
+        int branchColumn = -1;
+
+        for (int tick = 0; tick < MAX_TICKS; tick++) {
+            if (--ticksUntilDeadlineCheck == 0) {
+                ticksUntilDeadlineCheck = DEADLINE_INTERVAL;
+                if (System.nanoTime() > deadline) {
+                    timedOut = true;
+                    return false;
+                }
+            }
+
+            if (!falling && !fastFalling && !jump) {
+                /* Standing on the ground: everything from here on has been explored if this position has */
+                if (!markReached()) {
+                    return false;
+                }
+                pendingX[pendingCount] = x;
+                pendingY[pendingCount] = y;
+                pendingDx[pendingCount] = dx;
+                pendingCount++;
+            } else if (falling && branch && (int) x / tileSize != branchColumn) {
+                /* In the air over a new column: try dropping down into it */
+                branchColumn = (int) x / tileSize;
+                if (fastFallFromHere()) {
+                    return true;
+                }
+                if (timedOut) {
+                    return false;
+                }
+            }
+
+            step(jump);
+            jump = false;
+
+            if (y > rows * tileSize) {
+                /* Fell off the map */
+                return false;
+            }
+            if (x >= goal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Follow a fast fall starting at the current position, then restore the current state.
+     * @return True if the fast fall leads to the right edge of the chunk.
+     */
+    private boolean fastFallFromHere() {
+        double savedX = x, savedY = y, savedDx = dx, savedDy = dy;
+
+        boolean cleared = simulate(savedX, savedY, savedDx, savedDy, true, true, false);
+
+        x = savedX;
+        y = savedY;
+        dx = savedDx;
+        dy = savedDy;
+        falling = true;
+        fastFalling = false;
+        return cleared;
+    }
+
+    /**
+     * Mark the current ground position in the reachability grid.
+     * @return False if it had been reached before.
+     */
+    private boolean markReached() {
+        int row = (int) y / tileSize;
+        int pixel = (int) x;
+        if (row < 0 || row >= rows || pixel < 0 || pixel >= reachedWidth) {
+            return true;
+        }
+
+        int index = row * reachedWidth + pixel;
+        long bit = 1L << (index & 63);
+        if ((reached[index >> 6] & bit) != 0) {
+            return false;
+        }
+        reached[index >> 6] |= bit;
+        return true;
+    }
+
+    /**
+     * Advance the simulated player by one tick, see Player.getNextPosition() and Entity.checkTileMapCollision().
+     * @param jump Whether jump is pressed: a jump on the ground, a fast fall in the air.
+     */
+    private void step(boolean jump) {
+        dx += Player.MOVE_SPEED;
+        if (dx >= speed) {
+            dx = speed;
+        }
+
+        if (fastFalling) {
+            falling = false;
+            dy = Player.FAST_FALL_SPEED;
+        }
+
+        if (jump && !falling && !fastFalling) {
+            jump = false;
+            dy = Player.JUMP_START;
+            falling = true;
+        }
+
+        if (falling) {
+            dy += Player.FALL_SPEED;
+
+            if (jump) {
+                falling = false;
+                fastFalling = true;
+            }
+
+            if (dy > Player.MAX_FALL_SPEED) {
+                dy = Player.MAX_FALL_SPEED;
+            }
+        }
+
+        double yDest = y + dy;
+
+        sweep.sweep(tiles, x, y, Player.SIZE, Player.SIZE, dx, dy);
+        if (sweep.isBlockedY()) {
+            if (dy > 0) {
+                falling = false;
+                fastFalling = false;
+            }
+            dy = 0;
+        }
+        if (sweep.isBlockedX()) {
+            dx = 0;
+        }
+
+        if (!falling && !fastFalling) {
+            calculateCorners(x, yDest + 1);
+            if (!bottomLeft && !bottomRight) {
+                falling = true;
+            }
+        }
+
+        x = sweep.getX();
+        y = sweep.getY();
+    }
+
+    private void calculateCorners(double x, double y) {
+        int leftCol = (int) (x - Player.SIZE / 2) / tileSize;
+        int rightCol = (int) (x + (Player.SIZE / 2) - 1) / tileSize;
+        int topRow = (int) (y - Player.SIZE / 2) / tileSize;
+        int bottomRow = (int) (y + (Player.SIZE / 2) - 1) / tileSize;
+
+        topLeft = isSolid(topRow, leftCol);
+        topRight = isSolid(topRow, rightCol);
+        bottomLeft = isSolid(bottomRow, leftCol);
+        bottomRight = isSolid(bottomRow, rightCol);
+    }
+
+    private boolean isSolid(int row, int col) {
+        if (row < 0 || row >= rows) {
+            return false;
+        }
+        col -= LEAD_COLUMNS;
+        if (col < 0 || col >= columns) {
+            /* The neighbouring chunks start and end on flat ground */
+            return row == rows - 1;
+        }
+        return (solidity[col] & (1 << row)) != 0;
+    }
+}
@@ -0,0 +1,91 @@
+package TileMap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only view of a single chunk, either inside a memory-mapped ChunkPack or generated by the ChunkGenerator. Tiles
+ * are stored one byte per tile, column by column; views into a pack read straight from the mapped file, nothing is
+ * copied when the view is created.
+ */
+public class ChunkView {
+
+    private final String name;
+    private final int columns;
+    private final int rows;
+    private final ByteBuffer tiles;
+
+    /* Whether the chunk came from the ChunkGenerator, and the generator state it was laid out from if so */
+    private final boolean generated;
+    private final long seed;
+
+    /**
+     * @param name The chunk's name in the pack.
+     * @param columns The chunk width in tiles.
+     * @param rows The chunk height in tiles.
+     * @param tiles The chunk's tiles. Only read with absolute gets, so the view can be shared between threads.
+     */
+    ChunkView(String name, int columns, int rows, ByteBuffer tiles) {
+        this(name, columns, rows, tiles, false, 0);
+    }
+
+    /**
+     * @param name The chunk's name.
+     * @param columns The chunk width in tiles.
+     * @param rows The chunk height in tiles.
+     * @param tiles The chunk's tiles.
+     * @param seed The state of the generator's random stream the chunk was laid out from.
+     */
+    ChunkView(String name, int columns, int rows, ByteBuffer tiles, long seed) {
+        this(name, columns, rows, tiles, true, seed);
+    }
+
+    private ChunkView(String name, int columns, int rows, ByteBuffer tiles, boolean generated, long seed) {
+        if (tiles.capacity() != columns * rows) {
+            throw new IllegalArgumentException("Chunk " + name + " does not hold " + columns + "x" + rows + " tiles");
+        }
+
+        this.name = name;
+        this.columns = columns;
+        this.rows = rows;
+        this.tiles = tiles;
+        this.generated = generated;
+        this.seed = seed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return True if the chunk was generated, false if it is a hand-made one from the pack.
+     */
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    /**
+     * @return The state of the generator's random stream a generated chunk was laid out from. Laying out a chunk from
+     *         the same state again yields the same chunk, see ChunkScript.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get a tile ID.
+     * @param col The column within the chunk.
+     * @param row The row, counted from the top.
+     * @return The tile ID, in [0, 255].
+     */
+    public int getTile(int col, int row) {
+        return tiles.get(col * rows + row) & 0xFF;
+    }
+}
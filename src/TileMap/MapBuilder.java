@@ -1,64 +1,258 @@
 package TileMap;
 
+import GameState.SplitMix64;
+import Main.GamePanel;
 import Networking.WeatherData;
+import Profiling.Events.ChunkGenerateEvent;
 
-import java.util.Random;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ArrayBlockingQueue;
 
-public class MapBuilder implements Runnable{
-    private final TileMap tileMap;
-    private final Semaphore semaphore;
-    private final Random RNG;
+/**
+ * Background worker that prepares the chunks the map is extended with. It keeps a queue of ready chunks a few seconds
+ * ahead of the camera, so the game thread only ever takes the next chunk off the queue and never waits for one.
+ * Chunks are generated by a ChunkGenerator and validated for the scroll speed the level will have reached once the
+ * player gets to them; whenever that does not succeed within GENERATION_BUDGET_MICROS, one of the hand-made
+ * configurations for the weather is used instead.
+ *
+ * The worker idles until a run is started with the random stream its chunks are drawn from. In deterministic mode the
+ * chunks only depend on that stream: generation is limited by a number of attempts instead of time, and when the
+ * worker has not caught up the game thread builds the next chunk itself with buildNow(), rather than appending filler
+ * or waiting for the worker to be scheduled. When a recorded run is replayed, the chunks are rebuilt from its
+ * ChunkScript instead, which holds every chunk the run appended, filler included; should the script run out, the
+ * chunks are generated in deterministic mode.
+ */
+public class MapBuilder implements Runnable {
+    /* Hard upper bound for the number of prepared chunks */
+    private static final int MAX_LOOKAHEAD = 32;
+    /* Minimum number of prepared chunks, regardless of scroll speed */
+    private static final int MIN_LOOKAHEAD = 4;
+    /* How far ahead of the camera the prepared chunks should reach */
+    private static final double LOOKAHEAD_SECONDS = 2;
+    /* Time allowed for generating and validating a single chunk */
+    private static final long GENERATION_BUDGET_MICROS = 1000;
+    /* Generation attempts per chunk in deterministic mode */
+    private static final int DETERMINISTIC_ATTEMPTS = 16;
 
     /* Weather data container for RNG seeding and chunk selection */
     private final WeatherData weatherData;
 
+    private final ChunkGenerator generator;
+    /* Hand-made configurations, used when generation runs out of time */
     private TileConfiguration[] availableConfigurations;
+    /* Number of hand-made chunks used instead of generated ones */
+    private volatile long fallbacks;
 
-    private int workLoad;
+    private final ArrayBlockingQueue<ChunkView> readyChunks;
+    /* Number of prepared chunks the worker aims to keep in the queue */
+    private volatile int targetLookahead;
+    /* Used to predict the scroll speed at each chunk */
+    private final double baseScrollSpeed;
+    private final double accelerationFactor;
 
-    public MapBuilder(TileMap tileMap, Semaphore semaphore, WeatherData weatherData) {
-        this.tileMap = tileMap;
-        this.semaphore = semaphore;
-        this.RNG = new Random();
-        this.workLoad = 1;
+    /* Current run, guarded by this. Chunks prepared for an earlier generation are thrown away */
+    private SplitMix64 random;
+    private boolean deterministic;
+    private int generation;
+    private long firstColumn;
+    private ChunkScript script;
+
+    /* Held while a chunk is prepared, by the worker or by buildNow(). Guards the generator and the fields below, and
+     * is always taken before this */
+    private final Object building = new Object();
+    /* Random stream, script and generation of the run chunks are prepared for */
+    private SplitMix64 current;
+    private ChunkScript currentScript;
+    private int currentGeneration;
+    /* Index of the next chunk taken from the script */
+    private int scriptIndex;
+    /* Column the next chunk will be placed at, assuming all chunks end up in the map in order */
+    private long column;
+
+    public MapBuilder(WeatherData weatherData) {
         this.weatherData = weatherData;
 
+        this.generator = new ChunkGenerator(GamePanel.TILESIZE, GamePanel.HEIGHT / GamePanel.TILESIZE, weatherData);
         this.availableConfigurations = TileConfiguration.getAvailableConfigsForWeather(this.weatherData);
+
+        this.readyChunks = new ArrayBlockingQueue<>(MAX_LOOKAHEAD);
+        this.targetLookahead = MIN_LOOKAHEAD;
+        this.baseScrollSpeed = GamePanel.calculateScrollSpeed(weatherData);
+        this.accelerationFactor = GamePanel.calculateAccelerationFactor(weatherData);
+    }
+
+    /**
+     * Start the worker thread. It is a daemon thread and lives as long as the game does.
+     */
+    public void start() {
+        Thread thread = new Thread(this, "MapBuilder");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    public synchronized void setWorkLoad(int i) {
-        if (i < 1 || i > 100) {
-            throw new IllegalArgumentException("Invalid workload specifier given to map builder");
+    /**
+     * Start preparing chunks for a new run. Chunks prepared for the previous run are discarded.
+     * @param random The random stream the run's chunks are drawn from. Only used by the worker from now on.
+     * @param deterministic Whether the chunks may only depend on the random stream, see buildNow().
+     * @param firstColumn The map column the first chunk will be placed at, counted from the start of the run.
+     * @param script The chunks of a recorded run to rebuild, or null to draw them from the random stream.
+     */
+    public synchronized void restart(SplitMix64 random, boolean deterministic, long firstColumn, ChunkScript script) {
+        this.random = random;
+        this.deterministic = deterministic;
+        this.firstColumn = firstColumn;
+        this.script = script;
+        this.generation++;
+        readyChunks.clear();
+        notifyAll();
+    }
+
+    /**
+     * Size the lookahead queue so the prepared chunks cover LOOKAHEAD_SECONDS at the given scroll speed.
+     * @param scrollSpeed The scroll speed in pixels per tick.
+     */
+    public void setScrollSpeed(double scrollSpeed) {
+        double columnsNeeded = scrollSpeed * GamePanel.FPS * LOOKAHEAD_SECONDS / GamePanel.TILESIZE;
+        int chunks = (int) Math.ceil(columnsNeeded / generator.getAverageLength());
+        int target = Math.max(MIN_LOOKAHEAD, Math.min(MAX_LOOKAHEAD, chunks));
+
+        if (target > this.targetLookahead) {
+            this.targetLookahead = target;
+            synchronized (this) {
+                notifyAll();
+            }
+        } else {
+            this.targetLookahead = target;
         }
+    }
 
-        this.workLoad = i;
+    /**
+     * Take the next prepared chunk without blocking.
+     * @return The chunk, or null if the worker has not caught up.
+     */
+    public ChunkView poll() {
+        ChunkView chunk = readyChunks.poll();
+        if (chunk != null) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        return chunk;
     }
 
     /**
-     * Spawns a thread that adds x number of chunks to the tilemap where x is defined by the workLoad variable. After
-     * the thread is finished, workload is reset to 1.
+     * Prepare the next chunk on the calling thread, for when the worker has not caught up in deterministic mode. Waits
+     * for the chunk the worker is preparing right now, if any, and returns that one instead once it is done; either
+     * way the chunk is the one that comes next in the run's sequence, so the map does not depend on how fast the worker
+     * is. Generation is limited by attempts in deterministic mode, so neither wait is unbounded.
+     * @return The chunk.
      */
+    public ChunkView buildNow() {
+        synchronized (building) {
+            ChunkView chunk = readyChunks.poll();
+            if (chunk == null) {
+                chunk = prepareNext();
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+            return chunk;
+        }
+    }
+
+    public int getQueuedChunks() {
+        return readyChunks.size();
+    }
+
+    public long getFallbacks() {
+        return fallbacks;
+    }
+
     @Override
     public void run() {
-        /* Block the tilemap config vector semaphore */
-        try {
-            semaphore.acquire();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        while (true) {
+            synchronized (this) {
+                while (this.random == null || readyChunks.size() >= targetLookahead) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        /* Nobody is supposed to interrupt the builder, stop working if it happens anyway */
+                        e.printStackTrace();
+                        return;
+                    }
+                }
+            }
+
+            synchronized (building) {
+                /* The queue may have been emptied by buildNow() or a restart while the worker waited for the lock, but
+                 * only the worker adds to it, so it is still below its target */
+                ChunkView chunk = prepareNext();
+
+                synchronized (this) {
+                    /* Only the worker adds to the queue, and it is below its target, so this never fails */
+                    if (currentGeneration == this.generation) {
+                        readyChunks.offer(chunk);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Prepare the next chunk of the current run. Must hold building.
+     */
+    private ChunkView prepareNext() {
+        boolean deterministic;
+        synchronized (this) {
+            if (this.generation != currentGeneration) {
+                current = this.random;
+                currentScript = this.script;
+                currentGeneration = this.generation;
+                column = this.firstColumn;
+                scriptIndex = 0;
+                generator.setRandom(current);
+            }
+            deterministic = this.deterministic;
         }
 
-        for (int i = 0; i < this.workLoad; i++) {
-            /* Rudimentary add - one of available configs, randomly */
-            int configIndex = RNG.nextInt(availableConfigurations.length);
-            tileMap.appendTileConfig(availableConfigurations[configIndex]);
+        double speed = baseScrollSpeed + GamePanel.calculateAcceleration(accelerationFactor, column * GamePanel.TILESIZE);
+        ChunkView chunk = prepareChunk(deterministic, speed);
+        column += chunk.getColumns();
+        return chunk;
+    }
+
+    private ChunkView prepareChunk(boolean deterministic, double speed) {
+        ChunkGenerateEvent event = ChunkGenerateEvent.isRecorded() ? new ChunkGenerateEvent() : null;
+        if (event != null) {
+            event.begin();
         }
 
-        this.workLoad = 1;
+        ChunkView chunk;
+        if (currentScript != null && scriptIndex < currentScript.size()) {
+            chunk = currentScript.build(scriptIndex++, generator);
+        } else if (deterministic) {
+            chunk = generator.generate(speed, Long.MAX_VALUE, DETERMINISTIC_ATTEMPTS);
+        } else {
+            chunk = generator.generate(speed, System.nanoTime() + GENERATION_BUDGET_MICROS * 1000, Integer.MAX_VALUE);
+        }
+        boolean fallback = (chunk == null);
+        if (fallback) {
+            /* Out of time or attempts, fall back to a random hand-made configuration */
+            fallbacks++;
+            chunk = availableConfigurations[current.nextInt(availableConfigurations.length)].getChunk();
+        }
 
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.chunk = chunk.getName();
+                event.columns = chunk.getColumns();
+                event.fallback = fallback;
+                event.scrollSpeed = speed;
+                event.commit();
+            }
+        }
 
-        /* Give the semaphore back */
-        semaphore.release();
+        return chunk;
     }
 
 }
@@ -1,9 +1,13 @@
 package TileMap;
 
+import Assets.SpriteSheet;
+
 import java.awt.image.BufferedImage;
 
 public class Tile {
-    private final BufferedImage image;
+    /* The tile's image is looked up in the tileset on every draw, so it follows conversions to a new display format */
+    private final SpriteSheet tileset;
+    private final int row, col;
     private final Tile.type type;
 
     public enum type {
@@ -11,13 +15,15 @@ public class Tile {
         BLOCKED
     }
 
-    public Tile(BufferedImage image, Tile.type type) {
-        this.image = image;
+    public Tile(SpriteSheet tileset, int row, int col, Tile.type type) {
+        this.tileset = tileset;
+        this.row = row;
+        this.col = col;
         this.type = type;
     }
 
     public BufferedImage getImage() {
-        return image;
+        return tileset.getFrame(row, col);
     }
 
     public Tile.type getType() {
@@ -0,0 +1,172 @@
+package TileMap;
+
+/**
+ * Fixed-capacity ring buffer of map columns, addressed by absolute column index. Columns are appended on the right and
+ * evicted on the left once they have been scrolled past, so memory use is bounded by the capacity no matter how far
+ * the level goes. Tiles are stored as one byte each in a single flat array, column by column. Next to the tiles, every
+ * column keeps a bitmask of its solid rows so collision checks never have to resolve tile types.
+ */
+class TileColumnRing {
+
+    private final int capacity;
+    private final int mask;
+    private final int rows;
+
+    private final byte[] tiles;
+    /* The chunk each column was appended with */
+    private final ChunkView[] chunks;
+    /* Absolute index of the first column of the chunk each column was appended with */
+    private final long[] chunkStarts;
+
+    /* Bit n is set if the tile in row n of the column is solid */
+    private final short[] solidity;
+    /* Whether a tile ID is solid, indexed by tile ID */
+    private boolean[] solidTiles;
+
+    /* Absolute index of the oldest column still stored */
+    private long start;
+    /* Absolute index one past the newest column */
+    private volatile long end;
+
+    /**
+     * @param capacity The maximum number of columns held at once. Must be a power of two.
+     * @param rows The number of tiles per column.
+     */
+    TileColumnRing(int capacity, int rows) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two");
+        }
+        if (rows > Short.SIZE) {
+            throw new IllegalArgumentException("Columns can be at most " + Short.SIZE + " tiles high");
+        }
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.rows = rows;
+
+        this.tiles = new byte[capacity * rows];
+        this.chunks = new ChunkView[capacity];
+        this.chunkStarts = new long[capacity];
+        this.solidity = new short[capacity];
+        this.solidTiles = new boolean[256];
+
+        this.start = 0;
+        this.end = 0;
+    }
+
+    /**
+     * Append a column after the current last one.
+     * @param chunk The chunk holding the column.
+     * @param column The column within the chunk.
+     * @param chunkStart The absolute index of the first column of the chunk being appended.
+     */
+    void append(ChunkView chunk, int column, long chunkStart) {
+        if (chunk.getRows() != rows) {
+            throw new IllegalArgumentException("Column height does not match the map height");
+        }
+        if (remaining() == 0) {
+            throw new IllegalStateException("Tile column ring is full");
+        }
+
+        int base = (int) (end & mask) * rows;
+        for (int row = 0; row < rows; row++) {
+            tiles[base + row] = (byte) chunk.getTile(column, row);
+        }
+        chunks[(int) (end & mask)] = chunk;
+        chunkStarts[(int) (end & mask)] = chunkStart;
+        solidity[(int) (end & mask)] = computeSolidity(end);
+
+        end++;
+    }
+
+    /**
+     * Check whether an absolute column is currently held by the ring.
+     */
+    boolean contains(long col) {
+        return (col >= start) && (col < end);
+    }
+
+    /**
+     * Get a tile. The column has to be held by the ring, see contains().
+     */
+    int get(long col, int row) {
+        return tiles[(int) (col & mask) * rows + row] & 0xFF;
+    }
+
+    ChunkView getChunk(long col) {
+        return chunks[(int) (col & mask)];
+    }
+
+    long getChunkStart(long col) {
+        return chunkStarts[(int) (col & mask)];
+    }
+
+    /**
+     * Get the solid rows of a column as a bitmask, bit n standing for row n. The column has to be held by the ring.
+     */
+    int getSolidity(long col) {
+        return solidity[(int) (col & mask)] & 0xFFFF;
+    }
+
+    /**
+     * Set which tile IDs are solid and rebuild the bitmasks of all columns currently held.
+     * @param solidTiles Solidity by tile ID, covering all 256 possible IDs.
+     */
+    void setSolidTiles(boolean[] solidTiles) {
+        if (solidTiles.length != 256) {
+            throw new IllegalArgumentException("Solidity table must cover all 256 tile IDs");
+        }
+
+        this.solidTiles = solidTiles;
+        for (long col = start; col < end; col++) {
+            solidity[(int) (col & mask)] = computeSolidity(col);
+        }
+    }
+
+    private short computeSolidity(long col) {
+        int base = (int) (col & mask) * rows;
+        int bits = 0;
+        for (int row = 0; row < rows; row++) {
+            if (solidTiles[tiles[base + row] & 0xFF]) {
+                bits |= 1 << row;
+            }
+        }
+        return (short) bits;
+    }
+
+    /**
+     * Drop every column left of the given absolute column.
+     */
+    void evictBefore(long col) {
+        long newStart = Math.min(col, end);
+
+        for (long i = start; i < newStart; i++) {
+            chunks[(int) (i & mask)] = null;
+        }
+
+        if (newStart > start) {
+            start = newStart;
+        }
+    }
+
+    void clear() {
+        evictBefore(end);
+        start = 0;
+        end = 0;
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    long getEnd() {
+        return end;
+    }
+
+    /**
+     * The number of columns that can still be appended before the ring is full.
+     */
+    int remaining() {
+        return capacity - (int) (end - start);
+    }
+}
@@ -3,41 +3,38 @@ package TileMap;
 import Main.GamePanel;
 import Networking.WeatherData;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.util.Vector;
-
 /**
  * A tile configuration is a pre-loaded chunk of tiles that can be dynamically appended to a level's TileMap. The
- * elements of this enum all return Vectors of int arrays (of minimum length 20) via the getConfiguration() method.
- * The configurations are loaded from files inside the Resources/Maps directory. The .map configuration files can be
- * thought of as transposed matrices containing the integer tile IDs of the configuration. To get a feeling for how
- * they'd look as a map chunk, swap the rows and columns.
+ * elements of this enum all return a view of their tiles (at least 20 columns wide) via the getChunk() method.
+ * The configurations are authored as .map files inside the Resources/Maps directory, which ChunkPackCompiler compiles
+ * into the binary chunk pack they are loaded from. The .map configuration files can be thought of as transposed
+ * matrices containing the integer tile IDs of the configuration. To get a feeling for how they'd look as a map chunk,
+ * swap the rows and columns.
  */
 public enum TileConfiguration {
-    DEFAULT("Resources/Maps/tileConfigDefault.map", true),
-    LEDGE("Resources/Maps/tileConfigLedge.map", false),
-    LEDGE2("Resources/Maps/tileConfigLedge2.map", false),
-    STAIRS1("Resources/Maps/tileConfigStairs1.map", false),
-    STAIRS2("Resources/Maps/tileConfigStairs2.map", false),
-    BUMPS1("Resources/Maps/tileConfigBumps1.map", false),
-    BUMPS2("Resources/Maps/tileConfigBumps2.map", false),
-    PITS1("Resources/Maps/tileConfigPits1.map", false),
-    PITS2("Resources/Maps/tileConfigPits2.map", false),
-    PITS3("Resources/Maps/tileConfigPits3.map", false),
-    PLATFORMS1("Resources/Maps/tileConfigPlatforms1.map", false),
-    PLATFORMS2("Resources/Maps/tileConfigPlatforms2.map", false),
-    HOLE1("Resources/Maps/tileConfigHole1.map", false),
-    HOLE2("Resources/Maps/tileConfigHole2.map", false),
-    HOLE3("Resources/Maps/tileConfigHole3.map", false);
-
-    private final int configLength;
-    private final int configHeight;
-    private final Vector<int[]> configuration;
+    DEFAULT("tileConfigDefault", true),
+    LEDGE("tileConfigLedge", false),
+    LEDGE2("tileConfigLedge2", false),
+    STAIRS1("tileConfigStairs1", false),
+    STAIRS2("tileConfigStairs2", false),
+    BUMPS1("tileConfigBumps1", false),
+    BUMPS2("tileConfigBumps2", false),
+    PITS1("tileConfigPits1", false),
+    PITS2("tileConfigPits2", false),
+    PITS3("tileConfigPits3", false),
+    PLATFORMS1("tileConfigPlatforms1", false),
+    PLATFORMS2("tileConfigPlatforms2", false),
+    HOLE1("tileConfigHole1", false),
+    HOLE2("tileConfigHole2", false),
+    HOLE3("tileConfigHole3", false);
+
+    private static final TileConfiguration[] VALUES = values();
+
+    private final ChunkView chunk;
     private final boolean extendable;
 
-    public Vector<int[]> getConfiguration() {
-        return this.configuration;
+    public ChunkView getChunk() {
+        return this.chunk;
     }
 
     public boolean getExtendable() {
@@ -45,7 +42,32 @@ public enum TileConfiguration {
     }
 
     public int getLength() {
-        return this.configLength;
+        return this.chunk.getColumns();
+    }
+
+    /**
+     * Find the configuration a chunk belongs to.
+     * @param chunk A chunk returned by getChunk().
+     * @return The configuration.
+     */
+    public static TileConfiguration forChunk(ChunkView chunk) {
+        for (TileConfiguration configuration: VALUES) {
+            if (configuration.chunk == chunk) {
+                return configuration;
+            }
+        }
+        throw new IllegalArgumentException("Chunk " + chunk.getName() + " is not a tile configuration");
+    }
+
+    /**
+     * @param ordinal The ordinal of a configuration.
+     * @return The configuration.
+     */
+    public static TileConfiguration forOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= VALUES.length) {
+            throw new IllegalArgumentException("No tile configuration " + ordinal);
+        }
+        return VALUES[ordinal];
     }
 
     public static TileConfiguration[] getRainConfigs() {
@@ -61,52 +83,17 @@ public enum TileConfiguration {
     }
 
     /**
-     * Enum constructor that reads the specified map config file and converts it into a vector.
+     * Enum constructor that looks up the specified chunk in the chunk pack.
      */
-    TileConfiguration(String mapFileLocator, boolean extendable) {
-        configHeight = GamePanel.HEIGHT / GamePanel.TILESIZE;
-
-        configuration = new Vector<>();
+    TileConfiguration(String chunkName, boolean extendable) {
+        this.chunk = ChunkPack.getDefault().getChunk(chunkName);
+        if (this.chunk.getRows() != GamePanel.HEIGHT / GamePanel.TILESIZE) {
+            throw new IllegalStateException("Chunk " + chunkName + " does not match the map height");
+        }
 
-        loadMapFile(mapFileLocator, configuration);
-        this.configLength = this.configuration.size();
         this.extendable = extendable;
     }
 
-    private void loadMapFile(String s, Vector<int[]> config) {
-        try (BufferedReader br = new BufferedReader(new FileReader(s))) {
-
-            // Read map file
-            int numCols = Integer.parseInt(br.readLine()); // Line 1 holds the number of columns
-            int numRows = Integer.parseInt(br.readLine()); // Line 2 holds the number of rows
-
-            if (numRows != configHeight) throw new IllegalArgumentException("Invalid number of rows in map file");
-
-            /* Delimiter regex. Matches any whitespace character (\s) repeated any number of times (+) */
-            String delims = "\\s+";
-            for (int col = 0; col < numCols; col++) {
-                String line = br.readLine();
-
-                /* An array containing a single map column, the elements have to be converted to integers before being
-                * added to the config vector */
-
-                String[] tokens = line.split(delims);
-                if (tokens.length != configHeight) throw new IllegalArgumentException("Invalid number of rows in map file");
-
-                /* Build a valid integer array */
-                int[] column = new int[configHeight];
-                for (int i = 0; i < tokens.length; i++) {
-                    column[i] = Integer.parseInt(tokens[i]);
-                }
-
-                /* Add the integer array, representing the column, into the config vector */
-                config.addElement(column);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
     public static TileConfiguration[] getAvailableConfigsForWeather(WeatherData weatherData) {
         String weather = weatherData.getWeatherString();
 
@@ -1,16 +1,29 @@
 package TileMap;
 
+import Assets.SpriteCache;
+import Assets.SpriteSheet;
+import GameState.SplitMix64;
+import GameState.StateHistory;
+import GameState.StateStream;
 import Main.GamePanel;
 import Networking.WeatherData;
+import Profiling.Events.ChunkAppendEvent;
+import Rendering.FrameSnapshot;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.*;
-import java.util.Vector;
-import java.util.concurrent.Semaphore;
 
-public class TileMap {
+public class TileMap implements TileSweep.SolidTiles {
+
+    /**
+     * Told about every chunk the builder extends the map with during a run, e.g. to record it.
+     */
+    public interface ChunkListener {
+        /**
+         * @param chunk The chunk, just appended to the map.
+         */
+        void chunkAppended(ChunkView chunk);
+    }
 
     /* Position */
     /**
@@ -19,18 +32,46 @@ public class TileMap {
      */
     private double x, y;
 
+    /* Position during the previous tick, used for render interpolation */
+    private double xPrevious, yPrevious;
+
     /* Bounds */
     private int xmin, ymin, xmax, ymax;
 
     /* Map */
-    private Vector<int[]> mapStructure;
+    /**
+     * The map columns that are currently needed, from a few columns left of the camera up to the furthest generated
+     * one. Columns that have been scrolled past are evicted, so the map never takes up more than MAP_CAPACITY columns.
+     */
+    private final TileColumnRing mapStructure;
+    private static final int MAP_CAPACITY = 512;
+    /**
+     * Number of columns kept left of the camera before they are evicted: a few for drawing, plus as many as the camera
+     * can scroll past at top speed (the base speed plus the largest acceleration) during the span of the state
+     * history, so any tick in it can be restored without regenerating the map.
+     */
+    private static final int EVICTION_MARGIN = 10
+            + (int) Math.ceil(StateHistory.TICKS * (2 * GamePanel.MAX_SCROLLSPEED + 1) / GamePanel.TILESIZE);
+
+    /* Prerendered chunk images */
+    private final ChunkImageCache chunkImages;
+    private static final int MAX_CHUNK_IMAGES = 12;
+
+    /* Floating origin */
+    /**
+     * Absolute ring column that map column 0 currently refers to. All positions handed out by the map (camera, column
+     * offsets, bounds) are relative to this origin, which is moved forward every REBASE_COLUMNS columns so that entity
+     * and camera coordinates stay small no matter how long the run goes on.
+     */
+    private long originColumn;
+    private static final int REBASE_COLUMNS = 200;
 
     private final int tileSize;
     private int numRows, numCols;
     private int width, height;
 
     /***** Tileset *****/
-    private BufferedImage tileset;
+    private SpriteSheet tileset;
     /* Width of the tileset */
     private int numTilesAcross;
     /* Game height in tiles. Is 8 with a pixel height of 240 and tile size of 30 */
@@ -42,10 +83,20 @@ public class TileMap {
     private int rowOffset, colOffset;
     private int numRowsToRender, numColsToRender;
 
-    /* Map builder and concurrency resources */
+    /* Current scroll speed, as of the last update */
+    private double scrollSpeed;
+
+    /* Map builder */
     private final MapBuilder builder;
-    private Semaphore mapStructureAvailable;
     private final WeatherData weatherData;
+    /* Number of times the builder had no chunk ready, and filler was appended or the chunk built on the game thread */
+    private long chunkStalls;
+    /* Whether to build missing chunks on the game thread instead of appending filler, see startRun() */
+    private boolean deterministic;
+    /* Chunk taken from the builder that did not fit into the map yet */
+    private ChunkView pendingChunk;
+    /* Told about appended chunks, null if nobody is interested */
+    private ChunkListener chunkListener;
 
     public TileMap(int tileSize, WeatherData weatherData) {
         this.tileSize = tileSize;
@@ -53,26 +104,21 @@ public class TileMap {
         numColsToRender = GamePanel.WIDTH / tileSize + 2;
         numTilesVertical = GamePanel.HEIGHT / tileSize;
 
-        this.mapStructure = new Vector<>();
-
-        this.mapStructureAvailable = new Semaphore(1);
+        this.mapStructure = new TileColumnRing(MAP_CAPACITY, numTilesVertical);
+        this.chunkImages = new ChunkImageCache(tileSize, numTilesVertical, MAX_CHUNK_IMAGES);
 
         /* Create builder with weather data container for seeding */
         this.weatherData = weatherData;
-        this.builder = new MapBuilder(this, mapStructureAvailable, weatherData);
+        this.builder = new MapBuilder(weatherData);
+        this.builder.start();
 
-        /* Run the builder a set number of times until there is enough initial map to go on */
-        this.appendTileConfig(TileConfiguration.DEFAULT);
-        builder.setWorkLoad(10);
-        builder.run();
+        /* Start out with a flat chunk, the rest is appended from the builder's queue as the camera moves */
+        this.appendChunk(TileConfiguration.DEFAULT.getChunk());
 
-        numCols = mapStructure.size();
         numRows = numTilesVertical;
-
-        width = numCols * tileSize;
         height = numRows * tileSize;
 
-        xmin = GamePanel.WIDTH - width;
+        updateWidth();
         xmax = 0;
         ymin = GamePanel.HEIGHT - height;
         ymax = 0;
@@ -80,31 +126,25 @@ public class TileMap {
 
     public void loadTiles(String s) {
         try {
-            tileset = ImageIO.read(new File(s));
-            numTilesAcross = tileset.getWidth() / tileSize;
+            tileset = SpriteCache.get(s, tileSize, tileSize);
+
+            numTilesAcross = tileset.getColumns();
             // We assume that the image has two rows of tiles
             tiles = new Tile[2][numTilesAcross];
-            // Create a subimage container to save the individual tile images in
-            BufferedImage subimage;
+            // Everything past the first row of the tileset is blocked
+            boolean[] solidTiles = new boolean[256];
+            for (int id = numTilesAcross; id < solidTiles.length; id++) {
+                solidTiles[id] = true;
+            }
+            mapStructure.setSolidTiles(solidTiles);
             // Load in tiles, distinguishing between blocked and normal ones
             for (int col = 0; col < numTilesAcross; col++) {
-
-                // Load and mark tiles in the first row as normal
-                subimage = tileset.getSubimage(
-                        /* Subimage position */
-                        col * tileSize, 0,
-                        /* Subimage dimensions */
-                        tileSize, tileSize);
-                tiles[0][col] = new Tile(subimage, Tile.type.PASSABLE);
-
-                // Load and mark tiles in the second row as blocked
-                subimage = tileset.getSubimage(
-                        /* Subimage position */
-                        col * tileSize, tileSize,
-                        /* Subimage dimensions */
-                        tileSize, tileSize);
-                tiles[1][col] = new Tile(subimage, Tile.type.BLOCKED);
+                // Mark tiles in the first row as normal
+                tiles[0][col] = new Tile(tileset, 0, col, Tile.type.PASSABLE);
+                // Mark tiles in the second row as blocked
+                tiles[1][col] = new Tile(tileset, 1, col, Tile.type.BLOCKED);
             }
+            chunkImages.setTiles(tiles, numTilesAcross);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -122,6 +162,32 @@ public class TileMap {
         return y;
     }
 
+    /**
+     * Remember the current position as the previous tick's position. Called once at the start of every tick.
+     */
+    public void storePreviousPosition() {
+        this.xPrevious = this.x;
+        this.yPrevious = this.y;
+    }
+
+    public double getScrollSpeed() {
+        return scrollSpeed;
+    }
+
+    /**
+     * Get the chunk a map column belongs to.
+     * @param col The map column.
+     * @return The chunk, or null if the column is outside of the map.
+     */
+    public ChunkView getChunkAt(int col) {
+        long mapCol = originColumn + col;
+        if (!mapStructure.contains(mapCol)) {
+            return null;
+        }
+
+        return mapStructure.getChunk(mapCol);
+    }
+
     public int getWidth() {
         return width;
     }
@@ -132,25 +198,73 @@ public class TileMap {
 
     /**
      * Get the tile type at a specific pair of coordinates. Mostly useful for collision checking.
-     * Out-of-bounds indices will always return a passable value. This function reads from the protected MapStructure
-     * Vector, and is called as part of the player update function.
+     * Out-of-bounds indices, including columns that have already been evicted, will always return a passable value.
+     * This function reads from the protected MapStructure ring, and is called as part of the player update function.
      * @param row The tile row.
      * @param col The tile column.
      * @return The type of tile at (row, col).
      */
     public Tile.type getType(int row, int col) {
-        if ((row < 0) || (col < 0) || (row >= numRows) || (col >= numCols)) {
+        long mapCol = originColumn + col;
+        if ((row < 0) || (row >= numRows) || !mapStructure.contains(mapCol)) {
             /* Space outside of the map is always passable */
             return Tile.type.PASSABLE;
         }
 
-        int rc = mapStructure.get(col)[row];
+        int rc = mapStructure.get(mapCol, row);
         int rw = rc / numTilesAcross;
         int clmn = rc % numTilesAcross;
         return tiles[rw][clmn].getType();
     }
 
-    protected Semaphore getMapStructureAvailable() { return this.mapStructureAvailable; }
+    /**
+     * Check whether the tile at a pair of coordinates is solid. Gives the same answer as comparing getType() to BLOCKED,
+     * but only reads the column's solidity bitmask, so this is the one to use for collision checks.
+     * @param row The tile row.
+     * @param col The tile column.
+     * @return True if the tile is blocked. Space outside of the map never is.
+     */
+    @Override
+    public boolean isSolid(int row, int col) {
+        long mapCol = originColumn + col;
+        if ((row < 0) || (row >= numRows) || !mapStructure.contains(mapCol)) {
+            return false;
+        }
+
+        return (mapStructure.getSolidity(mapCol) & (1 << row)) != 0;
+    }
+
+    /**
+     * Check whether any tile in a rectangle of tiles is solid. Both corners are inclusive.
+     * @param firstRow The top row.
+     * @param firstCol The leftmost column.
+     * @param lastRow The bottom row.
+     * @param lastCol The rightmost column.
+     * @return True if at least one tile in the rectangle is blocked.
+     */
+    public boolean anySolid(int firstRow, int firstCol, int lastRow, int lastCol) {
+        firstRow = Math.max(firstRow, 0);
+        lastRow = Math.min(lastRow, numRows - 1);
+        if (firstRow > lastRow) {
+            return false;
+        }
+
+        /* Mask of the rows from firstRow through lastRow */
+        int rowMask = ((1 << (lastRow + 1)) - 1) & ~((1 << firstRow) - 1);
+
+        for (int col = firstCol; col <= lastCol; col++) {
+            long mapCol = originColumn + col;
+            if (mapStructure.contains(mapCol) && (mapStructure.getSolidity(mapCol) & rowMask) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public long getChunkStalls() {
+        return chunkStalls;
+    }
 
     /**
      * Sets the map position. Is called in the update section of the GameState containing the tilemap.
@@ -180,66 +294,241 @@ public class TileMap {
     }
 
     /**
-     * This update method checks the map bounds and forks off a new thread to extend the map vector if necessary.
+     * Start building the map for a new run. Chunks prepared for the previous run are discarded, so this should be
+     * called right after reset().
+     * @param random The random stream the run's chunks are drawn from.
+     * @param deterministic Whether the map may only depend on the random stream. If set, update() builds chunks the
+     *                      builder has not caught up with itself instead of appending filler, so the map is the same no
+     *                      matter how fast it is built.
+     * @param script The chunks of a recorded run to build the map from, or null to draw them from the random stream.
      */
-    public void update() {
-        /* If the column offset is such that there are less than 10 columns available off the right side of the screen */
-        if (colOffset > (mapStructure.size() - ((GamePanel.WIDTH / GamePanel.TILESIZE) + 10))) {
-            builder.setWorkLoad(10);
-            builder.run();
+    public void startRun(SplitMix64 random, boolean deterministic, ChunkScript script) {
+        this.deterministic = deterministic;
+        builder.restart(random, deterministic, mapStructure.getEnd(), script);
+    }
+
+    /**
+     * @param listener Told about every chunk appended from now on, null for nobody.
+     */
+    public void setChunkListener(ChunkListener listener) {
+        this.chunkListener = listener;
+    }
+
+    /**
+     * This update method checks the map bounds and extends the map with chunks prepared by the map builder if
+     * necessary. It never waits for the builder: if no chunk is ready, a flat filler chunk is appended instead, or in
+     * deterministic runs the chunk is built right away, see MapBuilder.buildNow().
+     * @param scrollSpeed The current scroll speed.
+     */
+    public void update(double scrollSpeed) {
+        this.scrollSpeed = scrollSpeed;
+        builder.setScrollSpeed(scrollSpeed);
+
+        /* Free the columns that have been scrolled past */
+        mapStructure.evictBefore(originColumn + colOffset - EVICTION_MARGIN);
+        chunkImages.evictBefore(mapStructure.getStart());
+
+        /* Append chunks while there are less than 10 columns available off the right side of the screen */
+        if (colOffset > (numCols - ((GamePanel.WIDTH / GamePanel.TILESIZE) + 10))) {
+            ChunkAppendEvent event = ChunkAppendEvent.isRecorded() ? new ChunkAppendEvent() : null;
+            if (event != null) {
+                event.begin();
+            }
+
+            int chunks = 0;
+            int stalls = 0;
+            ChunkView chunk = null;
+            while (colOffset > (numCols - ((GamePanel.WIDTH / GamePanel.TILESIZE) + 10))) {
+                chunk = pendingChunk;
+                pendingChunk = null;
+                if (chunk == null) {
+                    chunk = builder.poll();
+                }
+                if (chunk == null) {
+                    stalls++;
+                    chunk = deterministic ? builder.buildNow() : TileConfiguration.DEFAULT.getChunk();
+                }
+
+                if (!canAppend(chunk)) {
+                    /* The map is as far ahead as it can get, continue once columns have been evicted */
+                    pendingChunk = chunk;
+                    break;
+                }
+                appendChunk(chunk);
+                chunks++;
+                if (chunkListener != null) {
+                    chunkListener.chunkAppended(chunk);
+                }
+            }
+            chunkStalls += stalls;
+
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.chunks = chunks;
+                    event.tileConfiguration = (chunk == null) ? null : chunk.getName();
+                    event.stalls = stalls;
+                    event.queuedChunks = builder.getQueuedChunks();
+                    event.scrollSpeed = scrollSpeed;
+                    event.commit();
+                }
+            }
         }
     }
 
     /**
-     * Draw the tilemap. Reads from the protected MapStructure Vector.
-     * @param g The Graphics2D object to draw into.
+     * Capture or restore the camera and the origin, see StateStream. The map columns are not part of it: they only
+     * depend on the run's chunk sequence, and the columns of every tick in the state history are kept around.
+     * @param s The stream.
      */
-    public void draw(Graphics2D g) {
-        // Loop through every visible row
-        for (
-                int row = rowOffset;
-                row < rowOffset + numRowsToRender;
-                row++) {
+    public void syncState(StateStream s) {
+        this.originColumn = s.sync(this.originColumn);
+        this.x = s.sync(this.x);
+        this.y = s.sync(this.y);
+        this.xPrevious = s.sync(this.xPrevious);
+        this.yPrevious = s.sync(this.yPrevious);
+        this.scrollSpeed = s.sync(this.scrollSpeed);
+
+        if (s.isRestoring()) {
+            colOffset = (int) - this.x / tileSize;
+            rowOffset = (int) - this.y / tileSize;
+            if (originColumn + colOffset < mapStructure.getStart()) {
+                throw new IllegalStateException("Restored camera is at column " + (originColumn + colOffset)
+                        + ", the map starts at column " + mapStructure.getStart());
+            }
+            updateWidth();
+        }
+    }
 
-            if (row >= numRows) break;
+    /**
+     * Check whether the camera has moved far enough from the origin for the world to be rebased.
+     */
+    public boolean needsRebase() {
+        return colOffset >= REBASE_COLUMNS + EVICTION_MARGIN;
+    }
 
-            for (
-                    int col = colOffset;
-                    col < colOffset + numColsToRender;
-                    col++) {
+    /**
+     * Move the origin REBASE_COLUMNS columns to the right. The camera is shifted along with it, so the visible part of
+     * the map does not change; everything else that is positioned in map coordinates has to be shifted by the returned
+     * distance as well. Since the shift is a whole number of tiles, no tile boundary moves relative to any entity.
+     * @return The distance everything has been moved to the left, in pixels.
+     */
+    public int rebase() {
+        int shift = REBASE_COLUMNS * tileSize;
 
-                if (col >= numCols) break;
+        originColumn += REBASE_COLUMNS;
+        colOffset -= REBASE_COLUMNS;
+        x += shift;
+        xPrevious += shift;
 
-                /* Resolve tile in map datastructure */
-                int tileToRender = mapStructure.get(col)[row];
+        updateWidth();
 
-                /* If the first tile in the tileset is encountered, skip it */
-                if (tileToRender == 0) continue;
+        return shift;
+    }
+
+    /**
+     * Copy the camera position and the window of tiles that may become visible while interpolating from the previous
+     * to the current tick into the snapshot, along with the prerendered images of the chunks in that window that are
+     * ready. Reads from the protected MapStructure ring.
+     * @param snapshot The snapshot being captured.
+     */
+    public void capture(FrameSnapshot snapshot) {
+        snapshot.setCamera(xPrevious, yPrevious, x, y);
+
+        /* The map only ever scrolls left, so the previous position is the leftmost one */
+        int firstCol = (int) - Math.max(x, xPrevious) / tileSize;
+        int windowCols = numColsToRender + 1;
+        snapshot.setTileWindow(firstCol, windowCols, numRows);
 
-                /* Get tile y index in tileset */
-                long r;
+        for (int col = 0; col < windowCols; col++) {
+            long mapCol = originColumn + firstCol + col;
 
-                /* Done this way to prevent looking for a non-existent third row in the tile sheet */
-                if (tileToRender >= 30) {
-                    r = 1;
+            for (int row = 0; row < numRows; row++) {
+                if (mapStructure.contains(mapCol)) {
+                    snapshot.setTile(col, row, mapStructure.get(mapCol, row));
                 } else {
-                    r = tileToRender / numTilesAcross;
+                    snapshot.setTile(col, row, 0);
                 }
+            }
+        }
 
-                /* Get tile x index in tileset */
-                long c = tileToRender % numTilesAcross;
+        /* Chunk images, one per chunk overlapping the window */
+        long lastChunkStart = -1;
+        for (int col = 0; col < windowCols; col++) {
+            long mapCol = originColumn + firstCol + col;
+            if (!mapStructure.contains(mapCol)) continue;
 
-                g.drawImage(
-                        /* Resolve tile indices in tileset and load corresponding image */
-                        tiles[(int)r][(int)c].getImage(),
-                        (int) x + col * tileSize,
-                        (int) y + row * tileSize,
-                        null
-                );
+            long chunkStart = mapStructure.getChunkStart(mapCol);
+            if (chunkStart == lastChunkStart) continue;
+            lastChunkStart = chunkStart;
+
+            ChunkView chunk = mapStructure.getChunk(mapCol);
+            BufferedImage image = chunkImages.get(chunkStart, chunk);
+            if (image != null) {
+                snapshot.addChunk(image, (int) (chunkStart - originColumn), chunk.getColumns());
             }
         }
     }
 
+    /**
+     * Draw the tile window captured in the snapshot, at the camera position interpolated between the last two ticks.
+     * Only reads the snapshot and the tile set, so it is safe to call from the render thread.
+     * @param g The Graphics2D object to draw into.
+     * @param snapshot The frame being drawn.
+     * @param interpolation The interpolation factor, in [0, 1].
+     */
+    public void draw(Graphics2D g, FrameSnapshot snapshot, double interpolation) {
+        int renderX = (int) snapshot.getCameraX(interpolation);
+        int renderY = (int) snapshot.getCameraY(interpolation);
+
+        /* Blit the chunks that have been prerendered */
+        for (int i = 0; i < snapshot.getChunkCount(); i++) {
+            g.drawImage(snapshot.getChunkImage(i), renderX + snapshot.getChunkFirstColumn(i) * tileSize, renderY, null);
+        }
+
+        /* Draw the remaining columns tile by tile */
+        for (int col = 0; col < snapshot.getWindowColumns(); col++) {
+            int mapCol = snapshot.getFirstColumn() + col;
+            int screenX = renderX + mapCol * tileSize;
+
+            /* Skip columns that are not on screen at this interpolation step */
+            if (screenX + tileSize < 0 || screenX > GamePanel.WIDTH) continue;
+
+            /* Skip columns that have already been drawn as part of a chunk */
+            if (isCoveredByChunk(snapshot, mapCol)) continue;
+
+            for (int row = 0; row < snapshot.getWindowRows(); row++) {
+                int tileToRender = snapshot.getTile(col, row);
+
+                /* If the first tile in the tileset is encountered, skip it */
+                if (tileToRender == 0) continue;
+
+                g.drawImage(resolveTile(tiles, numTilesAcross, tileToRender).getImage(), screenX, renderY + row * tileSize, null);
+            }
+        }
+    }
+
+    private static boolean isCoveredByChunk(FrameSnapshot snapshot, int mapCol) {
+        for (int i = 0; i < snapshot.getChunkCount(); i++) {
+            int first = snapshot.getChunkFirstColumn(i);
+            if (mapCol >= first && mapCol < first + snapshot.getChunkColumns(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Look up the tile for a tile ID. IDs past the second row of the tileset wrap around within the second row.
+     * @param tiles The tileset, as loaded by loadTiles().
+     * @param numTilesAcross The tileset width in tiles.
+     * @param id The tile ID.
+     * @return The tile.
+     */
+    static Tile resolveTile(Tile[][] tiles, int numTilesAcross, int id) {
+        return tiles[Math.min(id / numTilesAcross, 1)][id % numTilesAcross];
+    }
+
     public void reset() {
         this.x = 0;
         this.y = 0;
@@ -247,21 +536,43 @@ public class TileMap {
         this.rowOffset = 0;
 
         fixBounds();
+        storePreviousPosition();
 
-        this.mapStructure.removeAllElements();
+        this.mapStructure.clear();
+        this.chunkImages.clear();
+        this.originColumn = 0;
+        this.pendingChunk = null;
 
-        appendTileConfig(TileConfiguration.DEFAULT);
+        appendChunk(TileConfiguration.DEFAULT.getChunk());
     }
 
     /**
-     * Appends a tile configuration to the end of the map and updates all class variables that depend on map width.
-     * @param config The configuration to be appended,
+     * Check whether there is enough room left in the map ring to append a chunk.
      */
-    protected synchronized void appendTileConfig(TileConfiguration config) {
-        for (int[] col: config.getConfiguration()) {
-            this.mapStructure.addElement(col);
+    private boolean canAppend(ChunkView chunk) {
+        return mapStructure.remaining() >= chunk.getColumns();
+    }
+
+    /**
+     * Appends a chunk to the end of the map and updates all class variables that depend on map width.
+     * @param chunk The chunk to be appended, either a hand-made configuration or a generated one.
+     */
+    private void appendChunk(ChunkView chunk) {
+        long chunkStart = this.mapStructure.getEnd();
+        for (int col = 0; col < chunk.getColumns(); col++) {
+            this.mapStructure.append(chunk, col, chunkStart);
         }
-        numCols = mapStructure.size();
+        updateWidth();
+
+        /* Start rendering the chunk's image before it scrolls into view */
+        this.chunkImages.get(chunkStart, chunk);
+    }
+
+    /**
+     * Recalculate the map width and the camera bound that depends on it, relative to the current origin.
+     */
+    private void updateWidth() {
+        numCols = (int) (mapStructure.getEnd() - originColumn);
         width = numCols * tileSize;
         xmin = GamePanel.WIDTH - width;
     }
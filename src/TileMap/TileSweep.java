@@ -0,0 +1,181 @@
+package TileMap;
+
+/**
+ * Moves a collision box through the tile grid and finds where it first runs into a solid tile, however far it moves
+ * in one go. Instead of only testing the destination, the sweep walks the tile rows and columns the box crosses in the
+ * order it crosses them, like a DDA line walk: whenever the leading edge enters a new row, that row is tested across
+ * the columns the box covers at that moment, and likewise for columns. A blocked axis stops at the tile edge while the
+ * other one slides on, so fast moves cannot tunnel through thin platforms or cut corners, and the work per move grows
+ * with the tiles crossed rather than with the speed.
+ *
+ * Boxes are placed by their centre and cover the same pixels as in Entity.calculateCorners(). Not thread safe: every
+ * user keeps its own sweep, which holds the result of the last move.
+ */
+public class TileSweep {
+
+    /**
+     * A grid of tiles to sweep through.
+     */
+    public interface SolidTiles {
+        /**
+         * @param row The tile row.
+         * @param col The tile column.
+         * @return True if the tile is solid.
+         */
+        boolean isSolid(int row, int col);
+    }
+
+    private final int tileSize;
+
+    /* Result of the last sweep */
+    private double x, y;
+    private boolean blockedX, blockedY;
+
+    /**
+     * @param tileSize The tile size in pixels.
+     */
+    public TileSweep(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Move a box and stop each axis at the first solid tile in its way, see getX(), getY() and isBlockedX/Y().
+     * @param tiles The tiles to collide with.
+     * @param x The horizontal centre of the box.
+     * @param y The vertical centre of the box.
+     * @param width The width of the box.
+     * @param height The height of the box.
+     * @param dx The horizontal distance to move.
+     * @param dy The vertical distance to move.
+     */
+    public void sweep(SolidTiles tiles, double x, double y, int width, int height, double dx, double dy) {
+        blockedX = false;
+        blockedY = false;
+        this.x = x + dx;
+        this.y = y + dy;
+
+        /* The edge facing the direction of movement leads, the opposite one trails. Edges are pixel positions, the
+         * right and bottom ones being the last pixel inside the box */
+        int stepX = dx < 0 ? -1 : 1;
+        int stepY = dy < 0 ? -1 : 1;
+        double leadX = dx < 0 ? x - width / 2 : x + (width / 2) - 1;
+        double trailX = dx < 0 ? x + (width / 2) - 1 : x - width / 2;
+        double leadY = dy < 0 ? y - height / 2 : y + (height / 2) - 1;
+        double trailY = dy < 0 ? y + (height / 2) - 1 : y - height / 2;
+
+        /* The tile each edge is in now, and the one it ends up in */
+        int leadCol = index(leadX), lastLeadCol = index(leadX + dx);
+        int trailCol = index(trailX), lastTrailCol = index(trailX + dx);
+        int leadRow = index(leadY), lastLeadRow = index(leadY + dy);
+        int trailRow = index(trailY), lastTrailRow = index(trailY + dy);
+
+        while (true) {
+            /* Take the edge that crosses into its next tile first. On a tie, trailing edges go first so the box no
+             * longer covers the tile it leaves, and rows go before columns */
+            double tTrailRow = crossing(trailRow, lastTrailRow, stepY, trailY, dy);
+            double tTrailCol = crossing(trailCol, lastTrailCol, stepX, trailX, dx);
+            double tLeadRow = crossing(leadRow, lastLeadRow, stepY, leadY, dy);
+            double tLeadCol = crossing(leadCol, lastLeadCol, stepX, leadX, dx);
+            double first = Math.min(Math.min(tTrailRow, tTrailCol), Math.min(tLeadRow, tLeadCol));
+            if (first == Double.POSITIVE_INFINITY) {
+                break;
+            }
+
+            if (tTrailRow == first) {
+                trailRow += stepY;
+            } else if (tTrailCol == first) {
+                trailCol += stepX;
+            } else if (tLeadRow == first) {
+                int row = leadRow + stepY;
+                if (anySolidInRow(tiles, row, Math.min(leadCol, trailCol), Math.max(leadCol, trailCol))) {
+                    /* Stop just short of the row, the rows covered now are the ones covered from here on */
+                    blockedY = true;
+                    this.y = (dy < 0) ? ((row + 1) * tileSize) + (height / 2.0) : (row * tileSize) - (height / 2.0);
+                    lastLeadRow = leadRow;
+                    trailRow = lastTrailRow = index(dy < 0 ? this.y + (height / 2) - 1 : this.y - height / 2);
+                } else {
+                    leadRow = row;
+                }
+            } else {
+                int col = leadCol + stepX;
+                if (anySolidInColumn(tiles, col, Math.min(leadRow, trailRow), Math.max(leadRow, trailRow))) {
+                    blockedX = true;
+                    this.x = (dx < 0) ? ((col + 1) * tileSize) + (width / 2.0) : (col * tileSize) - (width / 2.0);
+                    lastLeadCol = leadCol;
+                    trailCol = lastTrailCol = index(dx < 0 ? this.x + (width / 2) - 1 : this.x - width / 2);
+                } else {
+                    leadCol = col;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The horizontal centre of the box after the last sweep.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return The vertical centre of the box after the last sweep.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return True if the last sweep ran into a solid tile horizontally.
+     */
+    public boolean isBlockedX() {
+        return blockedX;
+    }
+
+    /**
+     * @return True if the last sweep ran into a solid tile vertically.
+     */
+    public boolean isBlockedY() {
+        return blockedY;
+    }
+
+    /**
+     * @return The tile index of a pixel position, rounded the same way as in Entity.calculateCorners().
+     */
+    private int index(double position) {
+        return (int) position / tileSize;
+    }
+
+    /**
+     * @param index The tile the edge is in.
+     * @param lastIndex The tile the edge ends up in.
+     * @param step The direction of movement, 1 or -1.
+     * @param start The edge position before moving.
+     * @param distance The distance moved.
+     * @return The fraction of the move after which the edge enters its next tile, infinity if it does not.
+     */
+    private double crossing(int index, int lastIndex, int step, double start, double distance) {
+        if (index == lastIndex) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int boundary = (step > 0 ? index + 1 : index) * tileSize;
+        return (boundary - start) / distance;
+    }
+
+    private static boolean anySolidInRow(SolidTiles tiles, int row, int firstCol, int lastCol) {
+        for (int col = firstCol; col <= lastCol; col++) {
+            if (tiles.isSolid(row, col)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean anySolidInColumn(SolidTiles tiles, int col, int firstRow, int lastRow) {
+        for (int row = firstRow; row <= lastRow; row++) {
+            if (tiles.isSolid(row, col)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}